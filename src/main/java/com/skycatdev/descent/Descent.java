@@ -1,26 +1,37 @@
 package com.skycatdev.descent;
 
 import com.skycatdev.descent.config.DescentConfig;
+import com.skycatdev.descent.map.DungeonGenerator;
+import com.skycatdev.descent.map.DungeonLayoutPool;
 import com.skycatdev.descent.map.DungeonPiece;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.block.Blocks;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.nucleoid.map_templates.BlockBounds;
 import xyz.nucleoid.map_templates.MapTemplate;
 import xyz.nucleoid.map_templates.MapTemplateSerializer;
 import xyz.nucleoid.plasmid.api.game.GameType;
+import xyz.nucleoid.plasmid.api.game.config.GameConfig;
+import xyz.nucleoid.plasmid.api.registry.PlasmidRegistryKeys;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Descent implements ModInitializer {
 	public static final String MOD_ID = "descent";
 
 	public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
+	private static @Nullable DungeonLayoutPool mapPool;
 
 	@Override
 	public void onInitialize() {
@@ -106,5 +117,53 @@ public class Descent implements ModInitializer {
 				DescentConfig.CODEC,
 				DescentGame::open
 		);
+
+		ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+			DungeonLayoutPool pool = new DungeonLayoutPool(server, DescentGame::createRandom);
+			mapPool = pool;
+			// Fill the pool once the pieces are ready, so that generating for the pool doesn't race the preload
+			preloadPieces(server).thenRun(() -> streamDescentConfigs(server).forEach(pool::register));
+		});
+		ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+			if (!success) return;
+			DungeonGenerator.PIECE_CACHE.invalidateAll();
+			@Nullable DungeonLayoutPool pool = mapPool;
+			preloadPieces(server).thenRun(() -> {
+				if (pool != null) {
+					pool.invalidate();
+					streamDescentConfigs(server).forEach(pool::register);
+				}
+			});
+		});
+		ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+			if (mapPool != null) {
+				mapPool.close();
+				mapPool = null;
+			}
+		});
+	}
+
+	/**
+	 * Load every piece used by a registered game into the piece cache.
+	 */
+	private static CompletableFuture<Void> preloadPieces(MinecraftServer server) {
+		Set<Identifier> ids = streamDescentConfigs(server)
+				.flatMap(config -> config.mapConfig().referencedPieces().stream())
+				.collect(Collectors.toSet());
+		return DungeonGenerator.preloadPieces(ids, server);
+	}
+
+	public static @Nullable DungeonLayoutPool getMapPool() {
+		return mapPool;
+	}
+
+	/**
+	 * @return All the {@link DescentConfig}s that are registered as games on the server.
+	 */
+	public static Stream<DescentConfig> streamDescentConfigs(MinecraftServer server) {
+		return server.getRegistryManager().getOrThrow(PlasmidRegistryKeys.GAME_CONFIG).stream()
+				.map(GameConfig::config)
+				.filter(config -> config instanceof DescentConfig)
+				.map(config -> (DescentConfig) config);
 	}
 }
\ No newline at end of file
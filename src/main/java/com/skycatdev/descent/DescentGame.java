@@ -1,13 +1,17 @@
 package com.skycatdev.descent;
 
 import com.skycatdev.descent.config.DescentConfig;
+import com.skycatdev.descent.map.DungeonChunkGenerator;
 import com.skycatdev.descent.map.DungeonGenerator;
+import com.skycatdev.descent.map.DungeonLayout;
+import com.skycatdev.descent.map.DungeonLayoutPool;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.GameMode;
+import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.fantasy.RuntimeWorldConfig;
 import xyz.nucleoid.plasmid.api.game.GameOpenContext;
 import xyz.nucleoid.plasmid.api.game.GameOpenProcedure;
@@ -17,7 +21,9 @@ import xyz.nucleoid.plasmid.api.game.player.JoinAcceptor;
 import xyz.nucleoid.plasmid.api.game.player.JoinAcceptorResult;
 import xyz.nucleoid.plasmid.api.game.player.JoinOffer;
 import xyz.nucleoid.plasmid.api.game.rule.GameRuleType;
-import xyz.nucleoid.plasmid.api.game.world.generator.TemplateChunkGenerator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class DescentGame {
     private final DescentConfig config;
@@ -32,24 +38,24 @@ public class DescentGame {
 
     public static GameOpenProcedure open(GameOpenContext<DescentConfig> context) {
         DescentConfig config = context.config();
-        Random random = Random.create();
-        if (FabricLoader.getInstance().isDevelopmentEnvironment()) {
-            int seed = -65299027;
-            Descent.LOGGER.debug("Using seed {}", seed);
-            random = Random.create(seed);
-        }
+        @Nullable DungeonLayoutPool pool = Descent.getMapPool();
+        CompletableFuture<DungeonLayout> futureLayout = pool == null ?
+                DungeonGenerator.generateAsync(config.mapConfig(), context.server(), createRandom()) :
+                pool.take(config);
 
-        RuntimeWorldConfig worldConfig;
+        // Plasmid builds the open procedure off the server thread, so waiting here only holds up this game space.
+        // The world isn't created until we hand back the procedure, which needs the finished dungeon.
+        DungeonLayout layout;
         try {
-            worldConfig = new RuntimeWorldConfig()
-                    .setGenerator(new TemplateChunkGenerator(context.server(), DungeonGenerator.generate(config.mapConfig(), context.server(), random)))
-//                    .setGenerator(new TemplateChunkGenerator(context.server(), MapTemplateSerializer.loadFrom(new FileInputStream(context.server().getRunDirectory().resolve("builtsponge.nbt").toFile()), context.server().getRegistryManager())))
-                    .setTimeOfDay(6000);
-//        } catch (IOException | NoSolutionException e) {
-        } catch (Exception e) {
-            throw new RuntimeException(e); // TODO: Don't crash
+            layout = futureLayout.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException(e.getCause()); // TODO: Don't crash
         }
 
+        RuntimeWorldConfig worldConfig = new RuntimeWorldConfig()
+                .setGenerator(new DungeonChunkGenerator(context.server(), layout))
+                .setTimeOfDay(6000);
+
         return context.openWithWorld(worldConfig, (activity, world) -> {
             DescentGame game = new DescentGame(config, activity.getGameSpace(), world);
 
@@ -60,6 +66,15 @@ public class DescentGame {
         });
     }
 
+    public static Random createRandom() {
+        if (FabricLoader.getInstance().isDevelopmentEnvironment()) {
+            int seed = -65299027;
+            Descent.LOGGER.debug("Using seed {}", seed);
+            return Random.create(seed);
+        }
+        return Random.create();
+    }
+
     private void onJoin(ServerPlayerEntity player) {
         player.changeGameMode(GameMode.SPECTATOR); // TODO WRONG
     }
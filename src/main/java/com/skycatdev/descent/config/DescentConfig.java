@@ -1,10 +1,23 @@
 package com.skycatdev.descent.config;
 
+import com.mojang.serialization.Codec;
 import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
+import org.jetbrains.annotations.Range;
 
-public record DescentConfig(MapConfig mapConfig) {
+/**
+ * @param pooledMaps How many maps to keep generated ahead of time for this game
+ */
+public record DescentConfig(MapConfig mapConfig, @Range(from = 0, to = Integer.MAX_VALUE) int pooledMaps) {
     public static final MapCodec<DescentConfig> CODEC = RecordCodecBuilder.mapCodec(instance -> instance.group(
-            MapConfig.CODEC.fieldOf("mapConfig").forGetter(DescentConfig::mapConfig)
+            MapConfig.CODEC.fieldOf("mapConfig").forGetter(DescentConfig::mapConfig),
+            Codec.INT.optionalFieldOf("pooledMaps", 1).forGetter(DescentConfig::pooledMaps)
     ).apply(instance, DescentConfig::new));
+
+    public DescentConfig {
+        //noinspection ConstantValue
+        if (pooledMaps < 0) {
+            throw new IllegalArgumentException("pooledMaps must be >= 0");
+        }
+    }
 }
@@ -2,18 +2,35 @@ package com.skycatdev.descent.config;
 
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
+import com.skycatdev.descent.map.RoomGraph;
+import com.skycatdev.descent.map.RoomSeparation;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.Pool;
+import net.minecraft.util.collection.Weighted;
 import org.jetbrains.annotations.Range;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * @param roomGraph          Which edges between rooms corridors are picked from. Delaunay by default, but the others are
+ *                           cheaper with lots of rooms.
+ * @param roomGraphNeighbors How many nearest neighbors of each room the other room graphs start from. At most
+ *                           {@link #MAX_ROOM_GRAPH_NEIGHBORS}, since every room keeps that many edges around.
+ * @param roomSeparation     How rooms that are too close get moved apart. Jitter by default, so existing configs make
+ *                           the same dungeons.
+ */
 public record MapConfig(Pool<Identifier> starts, Pool<Identifier> ends, @Unmodifiable List<Identifier> paths,
                         Pool<Identifier> rooms, @Range(from = 2, to = Integer.MAX_VALUE) int numberOfRooms,
                         @Range(from = 0, to = Integer.MAX_VALUE) int minSeparationX,
                         @Range(from = 0, to = Integer.MAX_VALUE) int minSeparationY,
-                        @Range(from = 0, to = Integer.MAX_VALUE) int minSeparationZ) {
+                        @Range(from = 0, to = Integer.MAX_VALUE) int minSeparationZ,
+                        RoomGraph roomGraph,
+                        @Range(from = 1, to = MAX_ROOM_GRAPH_NEIGHBORS) int roomGraphNeighbors,
+                        RoomSeparation roomSeparation) {
+    public static final int MAX_ROOM_GRAPH_NEIGHBORS = 64;
     public static final Codec<MapConfig> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             Pool.createNonEmptyCodec(Identifier.CODEC).fieldOf("starts").forGetter(MapConfig::starts),
             Pool.createNonEmptyCodec(Identifier.CODEC).fieldOf("ends").forGetter(MapConfig::ends),
@@ -22,7 +39,10 @@ public record MapConfig(Pool<Identifier> starts, Pool<Identifier> ends, @Unmodif
             Codec.INT.fieldOf("numberOfRooms").forGetter(MapConfig::numberOfRooms),
             Codec.INT.fieldOf("minSeparationX").forGetter(MapConfig::minSeparationX),
             Codec.INT.fieldOf("minSeparationY").forGetter(MapConfig::minSeparationY),
-            Codec.INT.fieldOf("minSeparationZ").forGetter(MapConfig::minSeparationZ)
+            Codec.INT.fieldOf("minSeparationZ").forGetter(MapConfig::minSeparationZ),
+            RoomGraph.CODEC.optionalFieldOf("roomGraph", RoomGraph.DELAUNAY).forGetter(MapConfig::roomGraph),
+            Codec.intRange(1, MAX_ROOM_GRAPH_NEIGHBORS).optionalFieldOf("roomGraphNeighbors", 8).forGetter(MapConfig::roomGraphNeighbors),
+            RoomSeparation.CODEC.optionalFieldOf("roomSeparation", RoomSeparation.JITTER).forGetter(MapConfig::roomSeparation)
     ).apply(instance, MapConfig::new));
 
     public MapConfig {
@@ -34,7 +54,24 @@ public record MapConfig(Pool<Identifier> starts, Pool<Identifier> ends, @Unmodif
         if (minSeparationX < 0 || minSeparationY < 0 || minSeparationZ < 0) {
             throw new IllegalArgumentException("Minimum separation values must be >= 0");
         }
+        //noinspection ConstantValue
+        if (roomGraphNeighbors < 1 || roomGraphNeighbors > MAX_ROOM_GRAPH_NEIGHBORS) {
+            throw new IllegalArgumentException("roomGraphNeighbors must be between 1 and " + MAX_ROOM_GRAPH_NEIGHBORS);
+        }
         // We want immutable things
         paths = List.copyOf(paths);
     }
+
+    /**
+     * @return The ids of every piece this config could use.
+     */
+    public Set<Identifier> referencedPieces() {
+        Set<Identifier> ids = new HashSet<>(paths);
+        for (Pool<Identifier> pool : List.of(starts, ends, rooms)) {
+            for (Weighted<Identifier> entry : pool.getEntries()) {
+                ids.add(entry.value());
+            }
+        }
+        return ids;
+    }
 }
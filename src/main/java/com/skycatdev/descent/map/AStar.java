@@ -7,71 +7,141 @@ import net.minecraft.util.math.random.Random;
 import org.apache.commons.lang3.NotImplementedException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import xyz.nucleoid.map_templates.BlockBounds;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 public class AStar {
+    /**
+     * How many connections are searched at once. This must not depend on the number of threads, or the same seed
+     * would make different maps on different machines.
+     */
+    private static final int ROUND_SIZE = 8;
+    private static final ForkJoinPool ROUTING_POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Descent Router #" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (thread, e) -> Descent.LOGGER.error("Uncaught exception in {}", thread.getName(), e),
+            false);
+
+    /**
+     * Connect each pair of rooms with paths.
+     * Connections are searched in rounds of {@link #ROUND_SIZE}. Everything in a round is searched at the same time,
+     * against what was placed before the round started. Once they've all finished, the results are placed in order, and
+     * any that overlap something placed earlier in the round (or didn't find a path) are searched again, one at a time.
+     * Since the rounds don't depend on timing or thread count, the same seed always gives the same paths.
+     */
     public static Collection<DungeonPiece> generatePath(Collection<DungeonPiece> base,
                                                         Collection<Pair<DungeonPiece, DungeonPiece>> toConnect,
                                                         Collection<DungeonPiece> pieces,
                                                         Random random) throws NoSolutionException {
-        Collection<DungeonPiece> paths = new HashSet<>();
-        Collection<BlockBounds> dungeonBounds = base.stream()
-                .map(DungeonPiece::dungeonBounds)
-                .toList();
-        for (Pair<DungeonPiece, DungeonPiece> connection : toConnect) {
-            Descent.LOGGER.debug("Generating path...");
-            paths.addAll(generatePath(dungeonBounds, connection.getLeft(), connection.getRight(), pieces, paths, random));
+        Collection<DungeonPiece> paths = new LinkedHashSet<>(); // Linked, so that the search order doesn't depend on hashes
+        BoundsIndex obstacles = new BoundsIndex();
+        for (DungeonPiece piece : base) {
+            obstacles.add(piece.dungeonBounds());
+        }
+
+        // Decide on all the openings first, so the random is used the same way no matter what order things finish in
+        List<Connection> connections = new ArrayList<>(toConnect.size());
+        for (Pair<DungeonPiece, DungeonPiece> pair : toConnect) {
+            if (pair.getLeft().equals(pair.getRight())) {
+                throw new NotImplementedException(); // TODO
+            }
+            DungeonPiece.Opening entrance = Utils.randomFromList(List.copyOf(pair.getLeft().openings()), random);
+            DungeonPiece.Opening exit = Utils.randomFromList(List.copyOf(pair.getRight().openings()), random);
+            connections.add(new Connection(pair.getLeft(), entrance, exit));
+        }
+
+        for (int roundStart = 0; roundStart < connections.size(); roundStart += ROUND_SIZE) {
+            List<Connection> round = connections.subList(roundStart, Math.min(roundStart + ROUND_SIZE, connections.size()));
+            List<CompletableFuture<Collection<DungeonPiece>>> searches = new ArrayList<>(round.size());
+            for (Connection connection : round) {
+                searches.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return generatePath(obstacles, connection, pieces);
+                    } catch (NoSolutionException e) {
+                        return null; // Might work once more is placed, so try again later
+                    }
+                }, ROUTING_POOL));
+            }
+            // Every search reads obstacles, so nothing can be placed until the whole round is done
+            CompletableFuture.allOf(searches.toArray(CompletableFuture[]::new)).join();
+
+            for (int i = 0; i < round.size(); i++) {
+                Descent.LOGGER.debug("Generating path...");
+                @Nullable Collection<DungeonPiece> path = searches.get(i).join();
+                if (path == null || overlapsPlaced(path, paths, obstacles)) {
+                    Descent.LOGGER.debug("Path conflicted with another one in its round, rerouting.");
+                    path = generatePath(obstacles, round.get(i), pieces);
+                }
+                for (DungeonPiece piece : path) {
+                    if (paths.add(piece)) {
+                        obstacles.add(piece);
+                    }
+                }
+            }
         }
         return paths;
     }
 
-    private static Collection<DungeonPiece> generatePath(Collection<BlockBounds> base,
-                                                         DungeonPiece start,
-                                                         DungeonPiece end,
-                                                         Collection<DungeonPiece> pieces,
-                                                         Collection<DungeonPiece> placedPaths,
-                                                         Random random) throws NoSolutionException {
-        Collection<Node> open = new HashSet<>();
-        Collection<Node> closed = new HashSet<>();
-
-        if (start.equals(end)) {
-            throw new NotImplementedException(); // TODO
+    /**
+     * @return Whether a new piece in the path overlaps something that's already placed
+     */
+    private static boolean overlapsPlaced(Collection<DungeonPiece> path, Collection<DungeonPiece> placedPaths, BoundsIndex obstacles) {
+        for (DungeonPiece piece : path) {
+            if (!placedPaths.contains(piece) && obstacles.intersectsAny(piece.dungeonBounds())) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Safe to call from multiple threads, as long as nothing is being added to obstacles.
+     * @param obstacles Everything that new pieces must not overlap - the rooms, and the paths placed so far as pieces,
+     *                  so they can be joined onto
+     */
+    private static Collection<DungeonPiece> generatePath(BoundsIndex obstacles,
+                                                         Connection connection,
+                                                         Collection<DungeonPiece> pieces) throws NoSolutionException {
+        IndexedHeap<PlacementKey, Node> open = new IndexedHeap<>(Comparator.comparingInt(Node::estPathLength));
+        Set<PlacementKey> closed = new HashSet<>();
 
-        // Decide on locations to match
-        DungeonPiece.Opening entrance = Utils.randomFromList(List.copyOf(start.openings()), random);
-        DungeonPiece.Opening exit = Utils.randomFromList(List.copyOf(end.openings()), random);
+        DungeonPiece start = connection.start();
+        DungeonPiece.Opening entrance = connection.entrance();
+        DungeonPiece.Opening exit = connection.exit();
 
         if (entrance.isConnected(exit)) {
             return List.of();
         }
 
-        open.add(new Node(null, start, null, 0, exit.center().getManhattanDistance(entrance.center())));
+        Node root = new Node(null, start, null, 0, exit.center().getManhattanDistance(entrance.center()));
+        open.offer(root.piece().key(), root);
 
         while (!open.isEmpty()) {
             Descent.LOGGER.trace("Searching {} nodes.", open.size());
 
-            Node parent = open.stream()
-                    .min(Comparator.comparingInt(Node::estPathLength))
-                    .orElseThrow(() -> new ConcurrentModificationException("open set was not empty, but there was nothing in it?"));
-            open.remove(parent);
+            Node parent = Objects.requireNonNull(open.poll());
 
             // Find already placed pieces and add them to the open list as needed. Don't check for overlap of course.
-            List<Node> placedNodes = streamNodeOpenings(parent, entrance).<Node>mapMulti((opening, adder) -> {
-                for (DungeonPiece placedPath : placedPaths) {
-                    DungeonPiece.@Nullable Opening connected = placedPath.getConnected(opening);
-                    if (connected != null) {
-                        adder.accept(Node.calculate(opening, placedPath, parent, entrance, exit));
-                    }
-                }
-            })
+            List<Node> placedNodes = streamNodeOpenings(parent, entrance).<Node>mapMulti((opening, adder) ->
+                    // Anything connected to the opening has the block just past it
+                    obstacles.forEachPieceAt(opening.center().offset(opening.direction()), placedPath -> {
+                        DungeonPiece.@Nullable Opening connected = placedPath.getConnected(opening);
+                        if (connected != null) {
+                            adder.accept(Node.calculate(opening, placedPath, parent, entrance, exit));
+                        }
+                    }))
                     // Filter out ones we've already searched
-                    .filter(successor -> closed.stream().noneMatch(closedNode -> successor.piece().equivalentTo(closedNode.piece())))
+                    .filter(successor -> !closed.contains(successor.piece().key()))
                     .sequential()
                     .toList();
             for (Node placedNode : placedNodes) {
@@ -82,16 +152,16 @@ public class AStar {
                     return path;
                 }
             }
-            open.addAll(placedNodes);
+            for (Node placedNode : placedNodes) {
+                open.offer(placedNode.piece().key(), placedNode);
+            }
 
             // Generate successors
             var protos = streamNodeOpenings(parent, entrance).flatMap(opening -> pieces.stream().flatMap(piece -> piece.matchedWith(opening))) // Place all possible pieces next to each opening
                     // Don't intersect already-placed pieces
-                    .filter(proto -> base.parallelStream().noneMatch(baseBound -> proto.piece().dungeonBounds().intersects(baseBound)))
+                    .filter(proto -> !obstacles.intersectsAny(proto.piece().dungeonBounds()))
                     // Don't intersect ancestors
-                    .filter(proto -> parent.streamPath().map(Node::piece)
-                            .map(DungeonPiece::dungeonBounds)
-                            .noneMatch(ancestorBounds -> proto.piece().dungeonBounds().intersects(ancestorBounds)))
+                    .filter(proto -> !parent.ancestors().intersectsAny(proto.piece().dungeonBounds()))
                     .toList();
 
             for (var proto : protos) {
@@ -104,21 +174,14 @@ public class AStar {
                 }
 
                 // Skip if in closed (already searched this)
-                boolean skip = false;
-                for (Node closedNode : closed) {
-                    if (proto.piece().equivalentTo(closedNode.piece())) {
-                        skip = true;
-                        break;
-                    }
-                }
-                if (skip) continue;
+                if (closed.contains(proto.piece().key())) continue;
 
                 Node successor = Node.fromProto(proto, parent, entrance, exit);
-                replaceSlower(open, successor);
+                open.offer(successor.piece().key(), successor); // Only replaces the one that's there if this is faster
             }
             // Parent goes on closed
             Descent.LOGGER.trace("Searched a node");
-            closed.add(parent);
+            closed.add(parent.piece().key());
         }
 
         throw new NoSolutionException("Ran out of options to check.");
@@ -141,28 +204,6 @@ public class AStar {
         }
     }
 
-    private static void replaceSlower(Collection<Node> replaceFrom, Node successor) {
-        HashSet<Node> toRemove = new HashSet<>();
-        boolean shouldAdd = true;
-
-        for (Node node : replaceFrom) {
-            if (successor.piece().equivalentTo(node.piece())) {
-                if (successor.estPathLength() < node.estPathLength()) { // Current is faster
-                    toRemove.add(node);
-                } else { // At least one is faster
-                    shouldAdd = false;
-                    break;
-                }
-            }
-        }
-
-        replaceFrom.removeAll(toRemove);
-
-        if (shouldAdd) {
-            replaceFrom.add(successor);
-        }
-    }
-
     protected static void addAlreadyPlaced(Collection<DungeonPiece> placed, ProtoNode node, Consumer<ProtoNode> adder) {
         // TODO: More accurate heuristics? it will be shorter, so we could just call that our "reused path" bonus.
         if (placed.isEmpty()) {
@@ -189,17 +230,22 @@ public class AStar {
         }
     }
 
+    /**
+     * @param ancestors The bounds of this node's piece and all of its ancestors' pieces
+     */
     private record Node(
             @Nullable Node parent,
             DungeonPiece piece,
             @Nullable DungeonPiece.Opening entrance,
             int distFromStart,
             int heuristic,
-            int estPathLength
+            int estPathLength,
+            PersistentBoundsIndex ancestors
     ) {
 
         private Node(@Nullable Node parent, DungeonPiece piece, @Nullable DungeonPiece.Opening entrance, int distFromStart, int heuristic) {
-            this(parent, piece, entrance, distFromStart, heuristic, distFromStart + heuristic);
+            this(parent, piece, entrance, distFromStart, heuristic, distFromStart + heuristic,
+                    (parent == null ? PersistentBoundsIndex.EMPTY : parent.ancestors()).with(piece.dungeonBounds()));
         }
 
         public static Node calculate(DungeonPiece.Opening opening, DungeonPiece piece, Node parent, DungeonPiece.Opening pathEntrance, DungeonPiece.Opening pathExit) {
@@ -219,10 +265,6 @@ public class AStar {
             return calculate(proto.opening(), proto.piece(), parent, pathEntrance, pathExit);
         }
 
-        public Stream<Node> streamPath() {
-            return StreamSupport.stream(iterateUp().spliterator(), false);
-        }
-
         public Iterable<Node> iterateUp() {
             return () -> new Iterator<>() {
                 @Nullable Node current = Node.this;
@@ -244,6 +286,15 @@ public class AStar {
         }
     }
 
+    /**
+     * A connection to search for, with the openings already picked
+     * @param start    The room to start at
+     * @param entrance The opening of start to leave from
+     * @param exit     The opening of the other room to arrive at
+     */
+    private record Connection(DungeonPiece start, DungeonPiece.Opening entrance, DungeonPiece.Opening exit) {
+    }
+
     /**
      * @param opening
      * @param piece   The piece to place to reach the opening.
@@ -0,0 +1,91 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.BlockBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A uniform grid over {@link BlockBounds}, for quickly checking whether something overlaps anything that's already been
+ * placed. Each bounds is stored in every cell it touches, so a check only looks at bounds that are nearby. Pieces can be
+ * added too, and then they can be looked up by position.
+ * Safe to read from multiple threads, as long as nothing is being added.
+ */
+public class BoundsIndex {
+    /**
+     * Cells are 2^CELL_SHIFT blocks on each side
+     */
+    public static final int CELL_SHIFT = 3;
+    private final Long2ObjectOpenHashMap<List<Entry>> cells = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Call {@code action} with the key of every cell that the bounds touch.
+     */
+    public static void forEachCell(BlockBounds bounds, LongConsumer action) {
+        BlockPos min = bounds.min();
+        BlockPos max = bounds.max();
+        for (int x = min.getX() >> CELL_SHIFT; x <= max.getX() >> CELL_SHIFT; x++) {
+            for (int y = min.getY() >> CELL_SHIFT; y <= max.getY() >> CELL_SHIFT; y++) {
+                for (int z = min.getZ() >> CELL_SHIFT; z <= max.getZ() >> CELL_SHIFT; z++) {
+                    action.accept(BlockPos.asLong(x, y, z));
+                }
+            }
+        }
+    }
+
+    public void add(BlockBounds bounds) {
+        add(bounds, null);
+    }
+
+    /**
+     * Add the piece's bounds, and remember the piece for {@link #forEachPieceAt}.
+     */
+    public void add(DungeonPiece piece) {
+        add(piece.dungeonBounds(), piece);
+    }
+
+    private void add(BlockBounds bounds, @Nullable DungeonPiece piece) {
+        Entry entry = new Entry(bounds, piece);
+        forEachCell(bounds, cell -> cells.computeIfAbsent(cell, key -> new ArrayList<>(2)).add(entry));
+    }
+
+    /**
+     * Call {@code action} with every piece that contains the position, in the order they were added. Only finds pieces
+     * that were added as pieces.
+     */
+    public void forEachPieceAt(BlockPos pos, Consumer<DungeonPiece> action) {
+        // Anything containing the position is in its cell
+        @Nullable List<Entry> cell = cells.get(BlockPos.asLong(pos.getX() >> CELL_SHIFT, pos.getY() >> CELL_SHIFT, pos.getZ() >> CELL_SHIFT));
+        if (cell == null) return;
+        for (Entry entry : cell) {
+            if (entry.piece() != null && entry.bounds().contains(pos)) {
+                action.accept(entry.piece());
+            }
+        }
+    }
+
+    public boolean intersectsAny(BlockBounds bounds) {
+        BlockPos min = bounds.min();
+        BlockPos max = bounds.max();
+        for (int x = min.getX() >> CELL_SHIFT; x <= max.getX() >> CELL_SHIFT; x++) {
+            for (int y = min.getY() >> CELL_SHIFT; y <= max.getY() >> CELL_SHIFT; y++) {
+                for (int z = min.getZ() >> CELL_SHIFT; z <= max.getZ() >> CELL_SHIFT; z++) {
+                    @Nullable List<Entry> cell = cells.get(BlockPos.asLong(x, y, z));
+                    if (cell == null) continue;
+                    for (Entry other : cell) {
+                        if (other.bounds().intersects(bounds)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private record Entry(BlockBounds bounds, @Nullable DungeonPiece piece) {
+    }
+}
@@ -2,6 +2,7 @@ package com.skycatdev.descent.map;
 
 import com.skycatdev.descent.Descent;
 import com.skycatdev.descent.utils.Utils;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.util.math.Vec3d;
 
 import java.util.*;
@@ -9,6 +10,18 @@ import java.util.*;
 // Adapted from https://github.com/vazgriz/DungeonGenerator/blob/master/Assets/Scripts3D/Delaunay3D.cs
 // See src/main/resources/third_party_licenses/zeni.txt and src/main/resources/third_party_licenses/vazgriz.txt
 public class Delaunay3D {
+    /**
+     * How far off of a line or plane points can be, relative to how spread out they are, to be treated as on it
+     */
+    private static final double FLAT_TOLERANCE = 1e-6;
+    /**
+     * How many points there need to be before it's worth splitting the work up with {@link ParallelDelaunay}
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+    /**
+     * The most points that can be triangulated. The mesh needs four more vertices for the tetrahedron around them all.
+     */
+    public static final int MAX_POINTS = Math.min(TetrahedralMesh.MAX_VERTICES - 4, InsertionOrder.MAX_POINTS);
 
     /*
      This *might* be optimized further by making tetrahedra out of triangles and triangles out of edges.
@@ -18,6 +31,27 @@ public class Delaunay3D {
      only 3.
     */
     public static Set<Edge> triangulate(List<Vec3d> vertices) {
+        SnappedPoints snapped = SnappedPoints.of(toPoints(vertices, 0));
+        Set<Edge> edges = new HashSet<>();
+        for (RoomEdge edge : triangulate(snapped.vertices())) {
+            edges.add(new Edge(vertices.get(snapped.point(edge.u(), 0)), vertices.get(snapped.point(edge.v(), 0)), edge.length()));
+        }
+        return edges;
+    }
+
+    /**
+     * @param points x, y, z of each point. They must all be different - use {@link SnappedPoints} first.
+     * @return The edges of the Delaunay triangulation, between indices of points
+     * @throws IllegalArgumentException If there are more than {@link #MAX_POINTS} points
+     */
+    public static List<RoomEdge> triangulate(double[] points) {
+        return triangulate(points, points.length / 3 >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallel Whether to use {@link ParallelDelaunay}. Either way gives the same edges.
+     */
+    static List<RoomEdge> triangulate(double[] points, boolean parallel) {
         /*
          General idea: Make one big tetrahedron that encompasses it all.
          For each vertex, find all tetrahedra that contain it. Break those down into triangles.
@@ -26,56 +60,249 @@ public class Delaunay3D {
          Get rid of the *EDGES* (not tetrahedra) that have the vertices of the big tetrahedron - now we don't have those points in
          our graph. Finally, return all the unique edges.
         */
+        int count = points.length / 3;
+        if (count > MAX_POINTS) {
+            throw new IllegalArgumentException(String.format("Can't triangulate more than %d points, got %d", MAX_POINTS, count));
+        }
+
+        if (count < 2) {
+            return List.of();
+        }
+
+        if (count == 2) {
+            return List.of(RoomEdge.between(points, 0, 1));
+        }
+
+        if (count == 3) {
+            return List.of(RoomEdge.between(points, 0, 1),
+                    RoomEdge.between(points, 1, 2),
+                    RoomEdge.between(points, 2, 0));
+        }
 
-        if (vertices.isEmpty()) {
-            return Set.of();
+        // Rooms that are all on one line or plane (like single-floor maps) would only make flat tetrahedra, so those
+        // are done in fewer dimensions. Measure against a line and plane through points that are far apart.
+        int a = 0;
+        int b = farthestFrom(points, count, a);
+        double abx = points[b * 3] - points[a * 3], aby = points[b * 3 + 1] - points[a * 3 + 1], abz = points[b * 3 + 2] - points[a * 3 + 2];
+        double length = Math.sqrt(abx * abx + aby * aby + abz * abz);
+        // Normal of the plane through a, b and whichever point is farthest from the line through them
+        double nx = 0, ny = 0, nz = 0;
+        double farthestSquared = 0;
+        for (int c = 0; c < count; c++) {
+            double acx = points[c * 3] - points[a * 3], acy = points[c * 3 + 1] - points[a * 3 + 1], acz = points[c * 3 + 2] - points[a * 3 + 2];
+            double cx = aby * acz - abz * acy, cy = abz * acx - abx * acz, cz = abx * acy - aby * acx;
+            double squared = cx * cx + cy * cy + cz * cz;
+            if (squared > farthestSquared) {
+                farthestSquared = squared;
+                nx = cx;
+                ny = cy;
+                nz = cz;
+            }
+        }
+        double normalLength = Math.sqrt(farthestSquared);
+        // The cross product's length is the distance from the line times the length of ab
+        if (normalLength <= FLAT_TOLERANCE * length * length) {
+            return triangulateCollinear(points, count, abx, aby, abz);
+        }
+        nx /= normalLength;
+        ny /= normalLength;
+        nz /= normalLength;
+        double thickness = 0;
+        for (int i = 0; i < count; i++) {
+            double distance = (points[i * 3] - points[a * 3]) * nx + (points[i * 3 + 1] - points[a * 3 + 1]) * ny + (points[i * 3 + 2] - points[a * 3 + 2]) * nz;
+            thickness = Math.max(thickness, Math.abs(distance));
+        }
+        if (thickness <= FLAT_TOLERANCE * length) {
+            return triangulateFlat(points, count, a, abx / length, aby / length, abz / length, nx, ny, nz);
         }
 
-        if (vertices.size() == 2) {
-            return Set.of(new Edge(vertices.getFirst(), vertices.getLast()));
+        // The enclosing tetrahedron goes right after the points
+        double[] withEnclosing = Arrays.copyOf(points, points.length + 12);
+        System.arraycopy(createSuperTetrahedron(points, count), 0, withEnclosing, points.length, 12);
+        if (parallel) {
+            return sorted(points, ParallelDelaunay.triangulate(withEnclosing, count));
         }
+        TetrahedralMesh mesh = tetrahedralize(withEnclosing, count);
 
-        if (vertices.size() == 3) {
-            return Set.of(new Edge(vertices.getFirst(), vertices.get(1)),
-                    new Edge(vertices.get(1), vertices.getLast()),
-                    new Edge(vertices.getLast(), vertices.getFirst()));
+        LongOpenHashSet edges = new LongOpenHashSet();
+        for (int cell = 0; cell < mesh.cellSlots(); cell++) {
+            if (!mesh.isLive(cell)) continue;
+            for (int i = 0; i < 4; i++) {
+                int u = mesh.cellVertex(cell, i);
+                if (u >= count) continue; // Part of the enclosing tetrahedron
+                for (int j = i + 1; j < 4; j++) {
+                    int v = mesh.cellVertex(cell, j);
+                    if (v >= count) continue;
+                    edges.add(RoomEdge.key(u, v));
+                }
+            }
+        }
+        return sorted(points, edges);
+    }
+
+    /**
+     * Sorted, so the order doesn't depend on how the points were inserted. Lengths are only worked out here, once each
+     * edge is known to be unique.
+     * @param edges {@link RoomEdge#key}s
+     */
+    static List<RoomEdge> sorted(double[] points, LongOpenHashSet edges) {
+        long[] keys = edges.toLongArray();
+        Arrays.sort(keys);
+        List<RoomEdge> sorted = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            sorted.add(RoomEdge.between(points, key));
         }
+        return sorted;
+    }
 
-        Tetrahedron enclosing = createSuperTetrahedron(vertices);
+    private static int farthestFrom(double[] points, int count, int from) {
+        int farthest = from;
+        double farthestSquared = -1;
+        for (int i = 0; i < count; i++) {
+            double dx = points[i * 3] - points[from * 3], dy = points[i * 3 + 1] - points[from * 3 + 1], dz = points[i * 3 + 2] - points[from * 3 + 2];
+            double squared = dx * dx + dy * dy + dz * dz;
+            if (squared > farthestSquared) {
+                farthestSquared = squared;
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
 
-        HashSet<Edge> edges = uniqueEdgesOf(tetrahedralize(vertices, enclosing));
-        edges.removeIf(edge -> edge.hasAny(enclosing.a(), enclosing.b(), enclosing.c(), enclosing.d()));
-        return edges;
+    /**
+     * When the points are all on a line, the only Delaunay edges are between neighbors along it.
+     * @param dx The direction of the line
+     */
+    private static List<RoomEdge> triangulateCollinear(double[] points, int count, double dx, double dy, double dz) {
+        List<Integer> order = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingDouble(i -> points[i * 3] * dx + points[i * 3 + 1] * dy + points[i * 3 + 2] * dz));
+        LongOpenHashSet edges = new LongOpenHashSet(count - 1);
+        for (int i = 1; i < count; i++) {
+            edges.add(RoomEdge.key(order.get(i - 1), order.get(i)));
+        }
+        return sorted(points, edges);
+    }
+
+    /**
+     * When the points are all on a plane, triangulate them in 2D on that plane instead.
+     * @param origin Where the plane's coordinates start
+     * @param ux     The direction of the plane's x-axis, which must be on the plane
+     * @param nx     The plane's normal
+     */
+    private static List<RoomEdge> triangulateFlat(double[] points, int count, int origin, double ux, double uy, double uz, double nx, double ny, double nz) {
+        // The plane's y-axis is perpendicular to the x-axis and the normal
+        double vx = ny * uz - nz * uy, vy = nz * ux - nx * uz, vz = nx * uy - ny * ux;
+
+        // The enclosing triangle goes right after the points
+        double[] flat = new double[(count + 3) * 2];
+        double minX, minY;
+        minX = minY = Double.MAX_VALUE;
+        double maxX, maxY;
+        maxX = maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            double dx = points[i * 3] - points[origin * 3], dy = points[i * 3 + 1] - points[origin * 3 + 1], dz = points[i * 3 + 2] - points[origin * 3 + 2];
+            double x = dx * ux + dy * uy + dz * uz;
+            double y = dx * vx + dy * vy + dz * vz;
+            flat[i * 2] = x;
+            flat[i * 2 + 1] = y;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        // Same idea as createSuperTetrahedron
+        double deltaMax = Math.max(1, Math.max(maxX - minX, maxY - minY) * 2);
+        double cornerX = minX - deltaMax;
+        double cornerY = minY - deltaMax;
+        flat[count * 2] = cornerX;
+        flat[count * 2 + 1] = cornerY;
+        flat[count * 2 + 2] = cornerX + 10 * deltaMax;
+        flat[count * 2 + 3] = cornerY;
+        flat[count * 2 + 4] = cornerX;
+        flat[count * 2 + 5] = cornerY + 11 * deltaMax;
+
+        TriangleMesh mesh = new TriangleMesh(flat, count, count + 1, count + 2);
+        for (int vertex : InsertionOrder.brio(points, count)) {
+            mesh.insert(vertex);
+        }
+        if (Descent.LOGGER.isDebugEnabled() && !mesh.isDelaunay()) {
+            Descent.LOGGER.debug("Flat triangulation is not delaunay!");
+        }
+
+        LongOpenHashSet edges = new LongOpenHashSet();
+        for (int cell = 0; cell < mesh.cellSlots(); cell++) {
+            if (!mesh.isLive(cell)) continue;
+            for (int i = 0; i < 3; i++) {
+                int u = mesh.cellVertex(cell, i);
+                int v = mesh.cellVertex(cell, (i + 1) % 3);
+                if (u >= count || v >= count) continue; // Part of the enclosing triangle
+                edges.add(RoomEdge.key(u, v));
+            }
+        }
+        return sorted(points, edges);
+    }
+
+    private static double[] toPoints(Collection<Vec3d> vertices, int extra) {
+        double[] points = new double[(vertices.size() + extra) * 3];
+        int i = 0;
+        for (Vec3d vertex : vertices) {
+            points[i++] = vertex.getX();
+            points[i++] = vertex.getY();
+            points[i++] = vertex.getZ();
+        }
+        return points;
     }
 
     /**
      * Create a "super tetrahedron" that encloses all the given points
      */
     public static Tetrahedron createSuperTetrahedron(List<Vec3d> points) {
+        double[] corners = createSuperTetrahedron(toPoints(points, 0), points.size());
+        return new Tetrahedron(new Vec3d(corners[0], corners[1], corners[2]),
+                new Vec3d(corners[3], corners[4], corners[5]),
+                new Vec3d(corners[6], corners[7], corners[8]),
+                new Vec3d(corners[9], corners[10], corners[11]));
+    }
+
+    /**
+     * @return x, y, z of the four corners of a tetrahedron that encloses the first {@code count} points
+     */
+    private static double[] createSuperTetrahedron(double[] points, int count) {
         // Find bounds
         double minX, minY, minZ;
         minX = minY = minZ = Double.MAX_VALUE;
         double maxX, maxY, maxZ;
-        maxX = maxY = maxZ = Double.MIN_VALUE;
+        maxX = maxY = maxZ = -Double.MAX_VALUE;
 
-        for (Vec3d point : points) {
-            if (point.getX() < minX) minX = point.getX();
-            if (point.getX() > maxX) maxX = point.getX();
-            if (point.getY() < minY) minY = point.getY();
-            if (point.getY() > maxY) maxY = point.getY();
-            if (point.getZ() < minZ) minZ = point.getZ();
-            if (point.getZ() > maxZ) maxZ = point.getZ();
+        for (int i = 0; i < count * 3; i += 3) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+            minZ = Math.min(minZ, points[i + 2]);
+            maxZ = Math.max(maxZ, points[i + 2]);
         }
 
         double dx = maxX - minX;
         double dy = maxY - minY;
         double dz = maxZ - minZ;
-        double deltaMax = Math.max(dx, Math.max(dy, dz)) * 2; // Biggest side of bounds
+        double deltaMax = Math.max(1, Math.max(dx, Math.max(dy, dz)) * 2); // Biggest side of bounds
+        // The corner is pushed out by deltaMax, so the far corner of the bounds is at most 3 * 2 * deltaMax from it
+        // along x + y + z. Making the sides at least twice that keeps everything well inside the slanted face.
+        // The sides are all different so it isn't symmetric, since symmetric points are more likely to land on the same sphere.
+        double cornerX = minX - deltaMax;
+        double cornerY = minY - deltaMax;
+        double cornerZ = minZ - deltaMax;
 
-        return new Tetrahedron(new Vec3d(minX - deltaMax, minY - deltaMax, minZ - deltaMax),
-                new Vec3d(maxX + deltaMax, minY - deltaMax, minZ - deltaMax),
-                new Vec3d(minX - deltaMax, maxY + deltaMax, minZ - deltaMax),
-                new Vec3d(minX - deltaMax, minY - deltaMax, maxZ + deltaMax));
+        return new double[]{
+                cornerX, cornerY, cornerZ,
+                cornerX + 12 * deltaMax, cornerY, cornerZ,
+                cornerX, cornerY + 13 * deltaMax, cornerZ,
+                cornerX, cornerY, cornerZ + 14 * deltaMax
+        };
     }
 
     /**
@@ -85,59 +312,61 @@ public class Delaunay3D {
      * @implSpec Does not remove tetrahedra that have points of the enclosing Tetrahedron.
      */
     public static List<Tetrahedron> tetrahedralize(Collection<Vec3d> vertices, Tetrahedron enclosing) {
+        int count = vertices.size();
+        double[] points = toPoints(vertices, 4);
+        int i = count * 3;
+        for (Vec3d corner : List.of(enclosing.a(), enclosing.b(), enclosing.c(), enclosing.d())) {
+            points[i++] = corner.getX();
+            points[i++] = corner.getY();
+            points[i++] = corner.getZ();
+        }
+        TetrahedralMesh mesh = tetrahedralize(points, count);
 
-        List<Tetrahedron> tetrahedra = new LinkedList<>();
-        tetrahedra.add(enclosing);
-
-        Collection<Vec3d> usedVertices = new HashSet<>();
-        usedVertices.add(enclosing.a());
-        usedVertices.add(enclosing.b());
-        usedVertices.add(enclosing.c());
-        usedVertices.add(enclosing.d());
-
+        List<Tetrahedron> tetrahedra = new ArrayList<>();
+        for (int cell = 0; cell < mesh.cellSlots(); cell++) {
+            if (!mesh.isLive(cell)) continue;
+            tetrahedra.add(new Tetrahedron(vertexOf(points, mesh.cellVertex(cell, 0)),
+                    vertexOf(points, mesh.cellVertex(cell, 1)),
+                    vertexOf(points, mesh.cellVertex(cell, 2)),
+                    vertexOf(points, mesh.cellVertex(cell, 3))));
+        }
+        return tetrahedra;
+    }
 
-        // For each vertex, find all tetrahedra that contain it
-        for (Vec3d vertex : vertices) {
-            usedVertices.add(vertex);
-            List<Triangle> triangles = new LinkedList<>();
-
-            // Break those down into triangles
-            Collection<Tetrahedron> badTetrahedra = new LinkedList<>();
-            for (Tetrahedron t : tetrahedra) {
-                if (t.circumsphereContains(vertex)) {
-                    badTetrahedra.add(t);
-                    triangles.add(new Triangle(t.a(), t.b(), t.c()));
-                    triangles.add(new Triangle(t.a(), t.b(), t.d()));
-                    triangles.add(new Triangle(t.a(), t.c(), t.d()));
-                    triangles.add(new Triangle(t.b(), t.c(), t.d()));
-                }
-            }
-            tetrahedra.removeAll(badTetrahedra);
-
-            // Compare each triangle to every other triangle. If they're too similar, get rid of them.
-            for (int i = 0; i < triangles.size(); i++) {
-                for (int j = i + 1; j < triangles.size(); j++) {
-                    if (Triangle.almostEqual(triangles.get(i), triangles.get(j))) {
-                        triangles.get(i).setBad(true);
-                        triangles.get(j).setBad(true);
-                    }
-                }
+    /**
+     * @param points The points to tetrahedralize, followed by the four corners of a tetrahedron that encloses them
+     * @param count  How many points there are, not counting the enclosing tetrahedron
+     */
+    private static TetrahedralMesh tetrahedralize(double[] points, int count) {
+        TetrahedralMesh mesh = new TetrahedralMesh(points, count, count + 1, count + 2, count + 3);
+        DelaunayValidator validator = new DelaunayValidator();
+        for (int vertex : InsertionOrder.brio(points, count)) {
+            mesh.insert(vertex);
+            if (validator.check(mesh, vertex) && Descent.LOGGER.isDebugEnabled()) {
+                Descent.LOGGER.debug("Edge dump: \n{}", Utils.makeEdgeDump(edgesOf(mesh, points)));
             }
+        }
+        return mesh;
+    }
 
-            triangles.removeIf(Triangle::isBad);
-
-            // Construct tetrahedra from those triangles and the vertex (we just split the tetrahedra into many smaller ones)
-            for (Triangle triangle : triangles) {
-                tetrahedra.add(new Tetrahedron(triangle.getU(), triangle.getV(), triangle.getW(), vertex));
-            }
+    private static Vec3d vertexOf(double[] points, int vertex) {
+        return new Vec3d(points[vertex * 3], points[vertex * 3 + 1], points[vertex * 3 + 2]);
+    }
 
-            // TODO: debug only
-            if (!isDelaunay(tetrahedra, usedVertices)) {
-                Descent.LOGGER.info("Not delaunay! Edge dump: \n{}", Utils.makeEdgeDump(uniqueEdgesOf(tetrahedra)));
+    /**
+     * @return Every edge in the mesh, including the enclosing tetrahedron's, for dumping
+     */
+    private static Set<Edge> edgesOf(TetrahedralMesh mesh, double[] points) {
+        Set<Edge> edges = new HashSet<>();
+        for (int cell = 0; cell < mesh.cellSlots(); cell++) {
+            if (!mesh.isLive(cell)) continue;
+            for (int i = 0; i < 4; i++) {
+                for (int j = i + 1; j < 4; j++) {
+                    edges.add(new Edge(vertexOf(points, mesh.cellVertex(cell, i)), vertexOf(points, mesh.cellVertex(cell, j))));
+                }
             }
         }
-
-        return tetrahedra;
+        return edges;
     }
 
     /**
@@ -157,10 +386,6 @@ public class Delaunay3D {
         return edgeSet;
     }
 
-    public static boolean almostEqual(Vec3d vec1, Vec3d vec2) {
-        return vec1.subtract(vec2).squaredDistanceTo(0, 0, 0) < 0.01;
-    }
-
     /**
      * Checks that a collection of tetrahedra is Delaunay, meaning that it contains all vertices specified
      * and that each tetrahedron does not contain a point that it is not made of.
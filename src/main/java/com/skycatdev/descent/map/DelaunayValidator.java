@@ -0,0 +1,75 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A safety net for {@link TetrahedralMesh}. After an insert, checks the cells it made against their neighbors (see
+ * {@link TetrahedralMesh#lastInsertViolations()}). The predicates are exact, so this should never find anything, but if
+ * it does it's counted in {@link #violations()}.
+ * <p>
+ * How often it checks is set with the {@code descent.delaunayValidation} system property: {@code off}, {@code sampled}
+ * (the default, which checks one insert in every {@link #SAMPLE_EVERY}), or {@code full} (every insert, used by tests).
+ * Anything else is warned about and treated as {@code sampled}.
+ * Make one per mesh.
+ */
+public class DelaunayValidator {
+    public static final int SAMPLE_EVERY = 64;
+    private static final AtomicLong VIOLATIONS = new AtomicLong();
+    private static final Mode MODE = parseMode(System.getProperty("descent.delaunayValidation"));
+    private int inserts = 0;
+
+    /**
+     * @return How many faces have been found that aren't Delaunay, since the game started
+     */
+    public static long violations() {
+        return VIOLATIONS.get();
+    }
+
+    public static Mode mode() {
+        return MODE;
+    }
+
+    /**
+     * Doesn't throw, since this runs while the class loads, and a typo shouldn't stop dungeons from generating
+     * @return {@link Mode#SAMPLED} if {@code value} is missing or isn't a mode
+     */
+    static Mode parseMode(@Nullable String value) {
+        if (value == null) {
+            return Mode.SAMPLED;
+        }
+        for (Mode mode : Mode.values()) {
+            if (mode.name().equals(value.trim().toUpperCase(Locale.ROOT))) {
+                return mode;
+            }
+        }
+        Descent.LOGGER.warn("Unknown descent.delaunayValidation mode \"{}\", using sampled. Expected off, sampled or full.", value);
+        return Mode.SAMPLED;
+    }
+
+    /**
+     * Call right after each {@link TetrahedralMesh#insert}.
+     * @return Whether the insert was checked and something was wrong
+     */
+    public boolean check(TetrahedralMesh mesh, int vertex) {
+        if (MODE == Mode.OFF || MODE == Mode.SAMPLED && inserts++ % SAMPLE_EVERY != 0) {
+            return false;
+        }
+        int violations = mesh.lastInsertViolations();
+        if (violations == 0) {
+            return false;
+        }
+        VIOLATIONS.addAndGet(violations);
+        Descent.LOGGER.warn("Inserting vertex {} left {} faces that aren't Delaunay ({} total)", vertex, violations, VIOLATIONS.get());
+        return true;
+    }
+
+    public enum Mode {
+        OFF,
+        SAMPLED,
+        FULL
+    }
+}
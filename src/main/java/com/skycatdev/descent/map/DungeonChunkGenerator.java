@@ -0,0 +1,157 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.ChunkRegion;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.gen.StructureAccessor;
+import net.minecraft.world.gen.chunk.Blender;
+import net.minecraft.world.gen.noise.NoiseConfig;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapEntity;
+import xyz.nucleoid.map_templates.MapTemplate;
+import xyz.nucleoid.map_templates.MapTransform;
+import xyz.nucleoid.plasmid.api.game.world.generator.GameChunkGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Generates a dungeon straight from its placed pieces, one chunk at a time, as the world asks for them. Nothing is
+ * placed for chunks that are never loaded, and the dungeon never has to exist as one big map.
+ */
+public class DungeonChunkGenerator extends GameChunkGenerator {
+    /**
+     * Pieces that overlap each chunk column, keyed by {@link ChunkPos#toLong}
+     */
+    private final Long2ObjectMap<List<PlacedPiece>> piecesByChunk = new Long2ObjectOpenHashMap<>();
+    /**
+     * Entities of the pieces, already transformed, keyed by the {@link ChunkPos#toLong} of the chunk they're in
+     */
+    private final Long2ObjectMap<List<MapEntity>> entitiesByChunk = new Long2ObjectOpenHashMap<>();
+
+    public DungeonChunkGenerator(MinecraftServer server, DungeonLayout layout) {
+        super(server);
+        int yOffset = MapAssembler.groundOffset(layout.bounds());
+        @Nullable MapTransform offset = yOffset == 0 ? null : MapTransform.translation(0, yOffset, 0);
+
+        for (DungeonPiece piece : layout.pieces()) {
+            MapTransform transform = offset == null ? piece.transform() : piece.transform().copyWith(offset);
+            BlockBounds templateBounds = piece.template().getBounds();
+            PlacedPiece placed = new PlacedPiece(piece.template(), transform, transform.transformedBounds(templateBounds), GridTransform.of(transform, templateBounds));
+            BlockPos min = placed.bounds().min();
+            BlockPos max = placed.bounds().max();
+            for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+                for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+                    piecesByChunk.computeIfAbsent(ChunkPos.toLong(chunkX, chunkZ), key -> new ArrayList<>()).add(placed);
+                }
+            }
+            piece.template().getEntities().forEach(entity -> {
+                MapEntity transformed = entity.transformed(transform);
+                long chunk = ChunkPos.toLong(MathHelper.floor(transformed.position().getX()) >> 4, MathHelper.floor(transformed.position().getZ()) >> 4);
+                entitiesByChunk.computeIfAbsent(chunk, key -> new ArrayList<>()).add(transformed);
+            });
+        }
+    }
+
+    @Override
+    public void populateEntities(ChunkRegion region) {
+        @Nullable List<MapEntity> entities = entitiesByChunk.get(region.getCenterPos().toLong());
+        if (entities == null) return;
+        for (MapEntity entity : entities) {
+            entity.createEntities(region.toServerWorld(), region::spawnEntity);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Chunk> populateNoise(Blender blender, NoiseConfig noiseConfig, StructureAccessor structureAccessor, Chunk chunk) {
+        ChunkPos chunkPos = chunk.getPos();
+        @Nullable List<PlacedPiece> pieces = piecesByChunk.get(chunkPos.toLong());
+        if (pieces != null) {
+            Heightmap oceanFloor = chunk.getHeightmap(Heightmap.Type.OCEAN_FLOOR_WG);
+            Heightmap worldSurface = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE_WG);
+            for (PlacedPiece piece : pieces) {
+                placeInChunk(chunk, piece, oceanFloor, worldSurface);
+            }
+        }
+        if (chunkPos.x == 0 && chunkPos.z == 0) {
+            setBlockState(chunk, BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState(), null, null);
+        }
+        return CompletableFuture.completedFuture(chunk);
+    }
+
+    /**
+     * Only the part of the template that lands in the chunk is looked at, unless the transform can't be undone. Then the
+     * whole template is transformed, and everything outside the chunk is skipped.
+     */
+    protected static void placeInChunk(Chunk chunk, PlacedPiece piece, Heightmap oceanFloor, Heightmap worldSurface) {
+        ChunkPos chunkPos = chunk.getPos();
+        BlockPos.Mutable worldPos = new BlockPos.Mutable();
+        @Nullable GridTransform grid = piece.grid();
+
+        if (grid == null) {
+            for (BlockPos pos : piece.template().getBounds()) {
+                piece.transform().transformPoint(worldPos.set(pos));
+                if (worldPos.getX() >> 4 != chunkPos.x || worldPos.getZ() >> 4 != chunkPos.z) continue;
+                placeBlock(chunk, piece, pos, worldPos, oceanFloor, worldSurface);
+            }
+            return;
+        }
+
+        BlockBounds column = BlockBounds.of(chunkPos.getStartX(), piece.bounds().min().getY(), chunkPos.getStartZ(),
+                chunkPos.getEndX(), piece.bounds().max().getY(), chunkPos.getEndZ());
+        @Nullable BlockBounds inChunk = grid.inverseBounds(column).intersection(piece.template().getBounds());
+        if (inChunk == null) return;
+        for (BlockPos pos : inChunk) {
+            grid.transformPoint(worldPos.set(pos));
+            placeBlock(chunk, piece, pos, worldPos, oceanFloor, worldSurface);
+        }
+    }
+
+    /**
+     * @param pos      Where the block is in the template
+     * @param worldPos Where it goes
+     */
+    private static void placeBlock(Chunk chunk, PlacedPiece piece, BlockPos pos, BlockPos worldPos, Heightmap oceanFloor, Heightmap worldSurface) {
+        BlockState state = piece.template().getBlockState(pos);
+        if (state.isAir()) return;
+        if (!setBlockState(chunk, worldPos, state, oceanFloor, worldSurface)) return;
+
+        @Nullable NbtCompound blockEntity = piece.template().getBlockEntityNbt(pos, worldPos);
+        if (blockEntity != null) {
+            chunk.addPendingBlockEntityNbt(blockEntity);
+        }
+    }
+
+    /**
+     * @return {@code false} if the position was outside the chunk's height limit, {@code true} if the block was set
+     */
+    private static boolean setBlockState(Chunk chunk, BlockPos pos, BlockState state, @Nullable Heightmap oceanFloor, @Nullable Heightmap worldSurface) {
+        int y = pos.getY();
+        if (chunk.isOutOfHeightLimit(y)) return false;
+        ChunkSection section = chunk.getSection(chunk.getSectionIndex(y));
+        section.setBlockState(pos.getX() & 15, y & 15, pos.getZ() & 15, state, false);
+        if (oceanFloor != null) oceanFloor.trackUpdate(pos.getX() & 15, y, pos.getZ() & 15, state);
+        if (worldSurface != null) worldSurface.trackUpdate(pos.getX() & 15, y, pos.getZ() & 15, state);
+        return true;
+    }
+
+    /**
+     * @param template The untransformed template. Don't mutate!
+     * @param bounds   The template's bounds, after transforming
+     * @param grid     The transform, if it can be undone
+     */
+    protected record PlacedPiece(MapTemplate template, MapTransform transform, BlockBounds bounds, @Nullable GridTransform grid) {
+    }
+}
@@ -3,34 +3,84 @@ package com.skycatdev.descent.map;
 import com.skycatdev.descent.Descent;
 import com.skycatdev.descent.config.MapConfig;
 import com.skycatdev.descent.utils.Utils;
-import net.minecraft.block.Blocks;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.resource.Resource;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.Pair;
-import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.util.math.random.Random;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.map_templates.BlockBounds;
-import xyz.nucleoid.map_templates.MapTemplate;
 import xyz.nucleoid.map_templates.MapTemplateSerializer;
 import xyz.nucleoid.map_templates.MapTransform;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DungeonGenerator {
-    public static MapTemplate generate(MapConfig config, MinecraftServer server, Random random) throws IOException, NoSolutionException {
+    public static final DungeonPieceCache PIECE_CACHE = new DungeonPieceCache(256, MapTemplateSerializer::loadFromResource);
+    /**
+     * Runs generation jobs so that they don't hold up the server thread. Threads are daemons, so a stuck generation
+     * won't keep the server from shutting down.
+     */
+    private static final ExecutorService GENERATION_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4),
+            new ThreadFactory("Descent Generator #", Thread.NORM_PRIORITY));
+    /**
+     * Runs generation that nobody is waiting on yet, like refilling the {@link DungeonLayoutPool}. It's separate from
+     * {@link #GENERATION_EXECUTOR}, so a game that needs a dungeon now never queues up behind these.
+     */
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactory("Descent Background Generator #", Thread.MIN_PRIORITY));
+
+    /**
+     * Generate a dungeon on the generation executor, for when something's waiting on it.
+     * @return A future that completes with the dungeon once it's ready. Completes exceptionally with the
+     * {@link IOException} or {@link NoSolutionException} that {@link DungeonGenerator#generate} would throw.
+     */
+    public static CompletableFuture<DungeonLayout> generateAsync(MapConfig config, MinecraftServer server, Random random) {
+        return generateAsync(config, server, random, GENERATION_EXECUTOR);
+    }
+
+    /**
+     * Generate a dungeon on a low priority background thread, for when nothing needs it yet.
+     * @see #generateAsync(MapConfig, MinecraftServer, Random)
+     */
+    public static CompletableFuture<DungeonLayout> generateInBackground(MapConfig config, MinecraftServer server, Random random) {
+        return generateAsync(config, server, random, BACKGROUND_EXECUTOR);
+    }
+
+    private static CompletableFuture<DungeonLayout> generateAsync(MapConfig config, MinecraftServer server, Random random, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long startTime = System.nanoTime();
+                DungeonLayout layout = generate(config, server, random);
+                Descent.LOGGER.debug("Generated dungeon in {}ms", (System.nanoTime() - startTime) / 1_000_000);
+                return layout;
+            } catch (IOException | NoSolutionException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public static DungeonLayout generate(MapConfig config, MinecraftServer server, Random random) throws IOException, NoSolutionException {
         List<DungeonPiece> pathPieces = loadPieces(config.paths(), server);
         List<DungeonPiece> rooms = new ArrayList<>();
 
         for (int i = 0; i < config.numberOfRooms() - 2; i++) { // -2 to account for start and end
-            DungeonPiece room = loadPiece(config.rooms().get(random), server);
-            Vec3i center = BlockPos.ofFloored(room.dungeonBounds().center());
-            room = room.withTransform(MapTransform.translation(-center.getX(), -center.getY(), -center.getZ())); // Center the room
-            rooms.add(room);
+            rooms.add(PIECE_CACHE.get(config.rooms().get(random), server).centered());
         }
 
         DungeonPiece start = loadPiece(config.starts().get(random), server);
@@ -39,51 +89,59 @@ public class DungeonGenerator {
 
         steerRooms(config, random, rooms);
 
-        // There's probably something better than a lookup, but this will do
-        Map<Vec3d, DungeonPiece> pieceLookup = new HashMap<>();
-        List<Vec3d> centers = new LinkedList<>();
-
-        for (DungeonPiece room : rooms) {
-            Vec3d center = room.dungeonBounds().center();
-            centers.add(center);
-            pieceLookup.put(center, room);
+        // Rooms are referred to by their index from here on
+        double[] centers = new double[rooms.size() * 3];
+        for (int i = 0; i < rooms.size(); i++) {
+            Vec3d center = rooms.get(i).dungeonBounds().center();
+            centers[i * 3] = center.getX();
+            centers[i * 3 + 1] = center.getY();
+            centers[i * 3 + 2] = center.getZ();
         }
 
         if (Descent.LOGGER.isTraceEnabled()) {
-            Descent.LOGGER.trace("Room point dump:\n{}", Utils.makePointDump(centers));
+            Descent.LOGGER.trace("Room point dump:\n{}", Utils.makePointDump(rooms.stream().map(room -> room.dungeonBounds().center()).iterator()));
         }
 
-        Set<Edge> allEdges = Delaunay3D.triangulate(centers);
-//        Set<Edge> allEdges = new HashSet<>();
-//
-//        for (int i = 0; i < centers.size(); i++) {
-//            Vec3d a = centers.get(i);
-//            for (int j = i + 1; j < centers.size(); j++) {
-//                allEdges.add(new Edge(a, centers.get(j)));
-//            }
-//        }
+        // Rooms with the same center are one vertex from here until they're connected
+        SnappedPoints snapped = SnappedPoints.of(centers);
+        double[] vertices = snapped.vertices();
+        List<RoomEdge> allEdges = config.roomGraph().build(vertices, config.roomGraphNeighbors());
 
         if (Descent.LOGGER.isTraceEnabled()) {
-            Descent.LOGGER.trace("Delaunay edge dump: \n{}", Utils.makeEdgeDump(allEdges));
+            Descent.LOGGER.trace("Room graph edge dump: \n{}", Utils.makeEdgeDump(allEdges.stream().map(edge -> edge.toEdge(vertices)).toList()));
         }
 
-        Set<Edge> resultingEdges = Prim.minimumSpanningTree(allEdges, centers.get(random.nextBetween(0, centers.size() - 1)));
+        List<RoomEdge> tree = SpanningTree.minimum(allEdges, snapped.vertexCount(), snapped.vertexOf(random.nextBetween(0, rooms.size() - 1)));
 
         if (Descent.LOGGER.isTraceEnabled()) {
-            Descent.LOGGER.trace("Prim edge dump: \n{}", Utils.makeEdgeDump(resultingEdges));
+            Descent.LOGGER.trace("Prim edge dump: \n{}", Utils.makeEdgeDump(tree.stream().map(edge -> edge.toEdge(vertices)).toList()));
         }
 
-        for (Edge edge : allEdges) {
+        // Edges as RoomEdge keys, in the order they were added
+        LongLinkedOpenHashSet resultingEdges = new LongLinkedOpenHashSet(tree.size() + allEdges.size() / 8);
+        for (RoomEdge edge : tree) {
+            resultingEdges.add(edge.key());
+        }
+        for (RoomEdge edge : allEdges) {
             // TODO: 10 is the constant that can be tweaked (chance of path being added back)
             if (random.nextBetween(0, 99) < 10) {
-                resultingEdges.add(edge);
+                resultingEdges.add(edge.key());
             }
         }
 
-        List<Pair<DungeonPiece, DungeonPiece>> connections = new LinkedList<>();
+        List<Pair<DungeonPiece, DungeonPiece>> connections = new ArrayList<>(resultingEdges.size());
 
-        for (Edge edge : resultingEdges) {
-            connections.add(new Pair<>(pieceLookup.get(edge.u()), pieceLookup.get(edge.v())));
+        for (LongIterator iterator = resultingEdges.iterator(); iterator.hasNext(); ) {
+            long edge = iterator.nextLong();
+            connections.add(new Pair<>(rooms.get(snapped.point(RoomEdge.uOf(edge), 0)), rooms.get(snapped.point(RoomEdge.vOf(edge), 0))));
+        }
+        if (snapped.hasDuplicates()) {
+            // Anything that was merged still needs to be connected to the room that stood in for it
+            for (int vertex = 0; vertex < snapped.vertexCount(); vertex++) {
+                for (int i = 1; i < snapped.pointCount(vertex); i++) {
+                    connections.add(new Pair<>(rooms.get(snapped.point(vertex, i - 1)), rooms.get(snapped.point(vertex, i))));
+                }
+            }
         }
 
         Collection<DungeonPiece> paths = AStar.generatePath(rooms, connections, pathPieces, random);
@@ -92,89 +150,119 @@ public class DungeonGenerator {
             Descent.LOGGER.trace("Path dump (centers): \n{}", Utils.makePointDump(paths.stream().map(p -> p.dungeonBounds().center()).iterator()));
         }
 
-        List<MapTemplate> templates = new ArrayList<>();
-
-        int minY = Integer.MAX_VALUE;
-        for (DungeonPiece room : rooms) {
-            MapTemplate roomTemplate = room.toTemplate();
-            minY = Math.min(roomTemplate.getBounds().min().getY(), minY);
-            templates.add(roomTemplate);
-        }
-
-        for (DungeonPiece path : paths) {
-            MapTemplate pathTemplate = path.toTemplate();
-            minY = Math.min(pathTemplate.getBounds().min().getY(), minY);
-            templates.add(path.toTemplate());
-        }
-
-        if (minY < 0) {
-            Descent.LOGGER.debug("Translating y by {}", -minY);
-            for (int i = 0; i < templates.size(); i++) {
-                templates.set(i, templates.get(i).translated(0, -minY, 0));
-            }
-        }
-
-
-        MapTemplate map = templates.getFirst();
-
-        for (int i = 1; i < templates.size(); i++) {
-            map = MapTemplate.merged(map, templates.get(i));
-        }
-
-        map.setBlockState(BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState());
-        return map;
+        return new DungeonLayout(rooms, List.copyOf(paths));
     }
 
+    /**
+     * Moves rooms apart until they're all at least the minimum separation from each other.
+     * @throws NoSolutionException If the rooms couldn't be separated, see {@link RoomSeparator#separate}
+     */
     @SuppressWarnings("UnusedReturnValue")
     @Contract("_,_,_->param3")
-    private static List<DungeonPiece> steerRooms(MapConfig config, Random random, List<DungeonPiece> rooms) {
+    private static List<DungeonPiece> steerRooms(MapConfig config, Random random, List<DungeonPiece> rooms) throws NoSolutionException {
         Descent.LOGGER.debug("Steering {} rooms", rooms.size());
-        boolean keepSteering = true;
-
-        while (keepSteering) {
-            keepSteering = false;
-            for (int i = 0; i < rooms.size(); i++) {
-                DungeonPiece main = rooms.get(i);
-                boolean move = false; // Whether this needs to move - handles when things are all zerod out, but still overlapping
-
-                for (int j = 0; j < rooms.size(); j++) {
-                    if (i == j) continue;
-                    BlockBounds otherBounds = rooms.get(j).dungeonBounds();
-                    BlockBounds avoid = BlockBounds.of(
-                            otherBounds.min().subtract(new Vec3i(config.minSeparationX(), config.minSeparationY(), config.minSeparationZ())),
-                            otherBounds.max().add(new Vec3i(config.minSeparationX(), config.minSeparationY(), config.minSeparationZ()))
-                    );
-                    @Nullable BlockBounds intersect = main.dungeonBounds().intersection(avoid);
-                    if (intersect != null) {
-                        move = true;
-                    }
-                }
+        int[] bounds = new int[rooms.size() * 6];
+        for (int i = 0; i < rooms.size(); i++) {
+            BlockBounds roomBounds = rooms.get(i).dungeonBounds();
+            bounds[i * 6] = roomBounds.min().getX();
+            bounds[i * 6 + 1] = roomBounds.min().getY();
+            bounds[i * 6 + 2] = roomBounds.min().getZ();
+            bounds[i * 6 + 3] = roomBounds.max().getX();
+            bounds[i * 6 + 4] = roomBounds.max().getY();
+            bounds[i * 6 + 5] = roomBounds.max().getZ();
+        }
 
-                if (move) {
-                    keepSteering = true;
-                    // TODO: Constants or random formula may need tweaking
-                    int x = random.nextBetween(-config.minSeparationX() * 3, config.minSeparationX() * 3);
-                    int y = random.nextBetween(-config.minSeparationY() * 3, config.minSeparationY() * 3);
-                    int z = random.nextBetween(-config.minSeparationZ() * 3, config.minSeparationZ() * 3);
-                    
-                    rooms.set(i, main.withTransform(MapTransform.translation(x, y, z)));
-                }
+        RoomSeparator separator = new RoomSeparator(bounds, config.minSeparationX(), config.minSeparationY(), config.minSeparationZ());
+        config.roomSeparation().separate(separator, random);
+
+        // Each room only gets one translation, however many times it was moved
+        for (int i = 0; i < rooms.size(); i++) {
+            if (separator.moved(i)) {
+                rooms.set(i, rooms.get(i).withTransform(MapTransform.translation(separator.offsetX(i), separator.offsetY(i), separator.offsetZ(i))));
             }
         }
         return rooms;
     }
 
-    // TODO: Cache?
     protected static DungeonPiece loadPiece(Identifier id, MinecraftServer server) throws IOException {
-        return new DungeonPiece(MapTemplateSerializer.loadFromResource(server, id), id);
+        return PIECE_CACHE.get(id, server).piece();
+    }
+
+    /**
+     * Load pieces into {@link DungeonGenerator#PIECE_CACHE} ahead of time, so that generating doesn't have to.
+     * Reading the files happens in parallel on the IO workers. Turning them into templates needs the registries, and I'm
+     * not sure that I trust mc to handle parallelism there, so that's done one piece at a time on a generation thread.
+     * @return A future that completes once every piece is cached. Pieces that fail to load are logged and skipped.
+     */
+    public static CompletableFuture<Void> preloadPieces(Collection<Identifier> ids, MinecraftServer server) {
+        if (ids.size() > PIECE_CACHE.maxSize()) {
+            Descent.LOGGER.warn("Preloading {} pieces, but the cache only holds {}. Some will need to be loaded again.", ids.size(), PIECE_CACHE.maxSize());
+        }
+        int generation = PIECE_CACHE.generation();
+        long startTime = System.nanoTime();
+
+        List<Identifier> toLoad = ids.stream()
+                .filter(id -> !PIECE_CACHE.contains(id))
+                .toList();
+        List<CompletableFuture<byte[]>> reads = toLoad.stream()
+                .map(id -> CompletableFuture.supplyAsync(() -> readPiece(id, server), Util.getIoWorkerExecutor()))
+                .toList();
+
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new))
+                .thenRunAsync(() -> {
+                    for (int i = 0; i < toLoad.size(); i++) {
+                        byte @Nullable [] bytes = reads.get(i).join();
+                        if (bytes == null) continue;
+                        try {
+                            PIECE_CACHE.put(toLoad.get(i), MapTemplateSerializer.loadFrom(new ByteArrayInputStream(bytes), server.getRegistryManager()), generation);
+                        } catch (IOException e) {
+                            Descent.LOGGER.warn("Failed to preload piece {}", toLoad.get(i), e);
+                        }
+                    }
+                    Descent.LOGGER.debug("Preloaded {} pieces in {}ms", toLoad.size(), (System.nanoTime() - startTime) / 1_000_000);
+                }, GENERATION_EXECUTOR);
+    }
+
+    private static byte @Nullable [] readPiece(Identifier id, MinecraftServer server) {
+        Identifier path = id.withPath(p -> "map_template/" + p + ".nbt");
+        Optional<Resource> resource = server.getResourceManager().getResource(path);
+        if (resource.isEmpty()) {
+            Descent.LOGGER.warn("Failed to preload piece {}, {} doesn't exist", id, path);
+            return null;
+        }
+        try (InputStream input = resource.get().getInputStream()) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            Descent.LOGGER.warn("Failed to preload piece {}", id, e);
+            return null;
+        }
     }
 
-    // TODO: Cache? Parallelize? I'm not sure that I trust mc to handle parallelism though.
     protected static List<DungeonPiece> loadPieces(List<Identifier> ids, MinecraftServer server) throws IOException {
-        List<DungeonPiece> pieces = new LinkedList<>();
+        List<DungeonPiece> pieces = new ArrayList<>(ids.size());
         for (Identifier id : ids) {
             pieces.add(loadPiece(id, server));
         }
         return pieces;
     }
+
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+        private final int priority;
+
+        private ThreadFactory(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + count.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            thread.setUncaughtExceptionHandler((t, e) -> Descent.LOGGER.error("Uncaught exception in {}", t.getName(), e));
+            return thread;
+        }
+    }
 }
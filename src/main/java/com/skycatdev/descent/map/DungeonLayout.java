@@ -0,0 +1,58 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A generated dungeon, as the pieces that make it up and where they go. This is much lighter than the map itself, since
+ * the templates are shared with the piece cache.
+ * @param rooms The placed rooms, including the start and end
+ * @param paths The placed pieces connecting the rooms
+ */
+public record DungeonLayout(List<DungeonPiece> rooms, List<DungeonPiece> paths) {
+    public DungeonLayout {
+        // We want immutable things
+        rooms = List.copyOf(rooms);
+        paths = List.copyOf(paths);
+    }
+
+    public List<DungeonPiece> pieces() {
+        List<DungeonPiece> pieces = new ArrayList<>(rooms.size() + paths.size());
+        pieces.addAll(rooms);
+        pieces.addAll(paths);
+        return Collections.unmodifiableList(pieces);
+    }
+
+    /**
+     * @return The bounds of the whole dungeon, before it's moved above y=0.
+     */
+    public BlockBounds bounds() {
+        return MapAssembler.boundsOf(pieces());
+    }
+
+    /**
+     * @return How many pieces the dungeon has. The templates are shared with the piece cache, so this is what the
+     * layout's own memory goes up with.
+     */
+    public int pieceCount() {
+        return rooms.size() + paths.size();
+    }
+
+    /**
+     * Place every piece into one map. Prefer {@link DungeonChunkGenerator}, which only places what's needed.
+     */
+    public MapTemplate toTemplate() {
+        MapTemplate map = new MapAssembler()
+                .addAll(pieces())
+                .build();
+
+        map.setBlockState(BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState());
+        return map;
+    }
+}
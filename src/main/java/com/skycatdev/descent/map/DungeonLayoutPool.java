@@ -0,0 +1,168 @@
+package com.skycatdev.descent.map;
+
+import com.google.gson.JsonElement;
+import com.mojang.serialization.JsonOps;
+import com.skycatdev.descent.Descent;
+import com.skycatdev.descent.config.DescentConfig;
+import com.skycatdev.descent.config.MapConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.random.Random;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Keeps dungeons generated ahead of time so that opening a game doesn't have to wait for the whole generation pipeline.
+ * Dungeons are pooled per {@link MapConfig}, keyed by the encoded config so that identical configs share a pool, even if
+ * they were loaded separately. Configs that share a map but want different numbers of dungeons ready share the pool,
+ * which keeps as many ready as the most any of them wants. Refills run in the background, behind any dungeon that a game
+ * is waiting on.
+ */
+public class DungeonLayoutPool {
+    /**
+     * How many pieces worth of dungeons we're willing to keep around, across all pools. Templates are shared with the
+     * piece cache, so each pooled piece only costs its bounds, openings and transform - a few hundred bytes.
+     */
+    public static final long MAX_POOLED_PIECES = 128 * 1024;
+    private final MinecraftServer server;
+    private final Supplier<Random> randomSupplier;
+    /**
+     * Guarded by {@code this}
+     */
+    private final Map<JsonElement, Entry> entries = new HashMap<>();
+    /**
+     * Guarded by {@code this}
+     */
+    private long pooledPieces = 0;
+    /**
+     * Guarded by {@code this}
+     */
+    private boolean closed = false;
+
+    public DungeonLayoutPool(MinecraftServer server, Supplier<Random> randomSupplier) {
+        this.server = server;
+        this.randomSupplier = randomSupplier;
+    }
+
+    /**
+     * @return A stable key for the config - equal configs will always give equal keys.
+     */
+    public static JsonElement keyOf(MapConfig config) {
+        return MapConfig.CODEC.encodeStart(JsonOps.INSTANCE, config).getOrThrow();
+    }
+
+    /**
+     * Start keeping dungeons ready for the given config, if we aren't already, or keep more ready if it wants more than
+     * the other configs with the same map.
+     */
+    public synchronized void register(DescentConfig config) {
+        refill(entryFor(config));
+    }
+
+    /**
+     * Take a ready dungeon for the given config, generating one if there's none ready. Either way, the pool is refilled
+     * in the background.
+     * @return A future that completes with a dungeon that belongs to the caller.
+     */
+    public CompletableFuture<DungeonLayout> take(DescentConfig config) {
+        @Nullable DungeonLayout layout;
+        synchronized (this) {
+            Entry entry = entryFor(config);
+            layout = entry.ready.poll();
+            if (layout != null) {
+                pooledPieces -= layout.pieceCount();
+            }
+            refill(entry);
+        }
+        if (layout != null) {
+            Descent.LOGGER.debug("Took a pooled dungeon");
+            return CompletableFuture.completedFuture(layout);
+        }
+        Descent.LOGGER.debug("No pooled dungeon ready, generating one");
+        return DungeonGenerator.generateAsync(config.mapConfig(), server, randomSupplier.get());
+    }
+
+    /**
+     * Drop all pooled dungeons and stop refilling. Generation that is already running will be thrown away.
+     */
+    public synchronized void close() {
+        closed = true;
+        entries.clear();
+        pooledPieces = 0;
+    }
+
+    /**
+     * Drop all pooled dungeons, but keep refilling for the configs we know about. Useful when the pieces might have changed.
+     */
+    public synchronized void invalidate() {
+        Map<JsonElement, Entry> oldEntries = Map.copyOf(entries);
+        entries.clear();
+        pooledPieces = 0;
+        for (Map.Entry<JsonElement, Entry> oldEntry : oldEntries.entrySet()) {
+            Entry entry = new Entry(oldEntry.getValue().mapConfig);
+            entry.pooledMaps = oldEntry.getValue().pooledMaps;
+            entries.put(oldEntry.getKey(), entry);
+            refill(entry);
+        }
+    }
+
+    /**
+     * @return The entry for the config's map, now keeping at least as many ready as the config wants
+     */
+    private synchronized Entry entryFor(DescentConfig config) {
+        Entry entry = entries.computeIfAbsent(keyOf(config.mapConfig()), key -> new Entry(config.mapConfig()));
+        entry.pooledMaps = Math.max(entry.pooledMaps, config.pooledMaps());
+        return entry;
+    }
+
+    private synchronized void refill(Entry entry) {
+        while (!closed && entry.ready.size() + entry.generating < entry.pooledMaps && pooledPieces + entry.lastPieceCount <= MAX_POOLED_PIECES) {
+            entry.generating++;
+            DungeonGenerator.generateInBackground(entry.mapConfig, server, randomSupplier.get())
+                    .whenComplete((layout, throwable) -> onGenerated(entry, layout, throwable));
+        }
+    }
+
+    private synchronized void onGenerated(Entry entry, @Nullable DungeonLayout layout, @Nullable Throwable throwable) {
+        entry.generating--;
+        if (closed || entries.get(keyOf(entry.mapConfig)) != entry) return; // Thrown away while we were generating
+        if (throwable != null || layout == null) {
+            // Don't refill here - if it failed once, it'll probably fail again. We'll try again the next time one's taken.
+            Descent.LOGGER.warn("Failed to generate a dungeon for the pool", throwable);
+            return;
+        }
+        int pieceCount = layout.pieceCount();
+        entry.lastPieceCount = pieceCount;
+        if (pooledPieces + pieceCount > MAX_POOLED_PIECES) {
+            Descent.LOGGER.debug("Not pooling a dungeon of {} pieces, the pool is full", pieceCount);
+            return;
+        }
+        entry.ready.add(layout);
+        pooledPieces += pieceCount;
+        Descent.LOGGER.debug("Pooled a dungeon, {} ready for this config", entry.ready.size());
+        refill(entry);
+    }
+
+    private static class Entry {
+        private final MapConfig mapConfig;
+        private final Deque<DungeonLayout> ready = new ArrayDeque<>();
+        /**
+         * The most any config with this map wants ready
+         */
+        private int pooledMaps = 0;
+        private int generating = 0;
+        /**
+         * How many pieces the last dungeon generated had, used to guess whether the next one will fit
+         */
+        private int lastPieceCount = 0;
+
+        private Entry(MapConfig mapConfig) {
+            this.mapConfig = mapConfig;
+        }
+    }
+}
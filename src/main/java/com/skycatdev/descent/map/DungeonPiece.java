@@ -11,7 +11,7 @@ import xyz.nucleoid.map_templates.MapTemplate;
 import xyz.nucleoid.map_templates.MapTransform;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -37,6 +37,10 @@ public class DungeonPiece {
      * The id of the template
      */
     private final Identifier id;
+    /**
+     * Which piece this is, and where
+     */
+    private final PlacementKey key;
 
     public DungeonPiece(MapTemplate template, Identifier id) {
         this(template, id, new StackedMapTransform());
@@ -59,11 +63,19 @@ public class DungeonPiece {
      * @param transform The transform to apply to the template before placing
      */
     protected DungeonPiece(BlockBounds dungeonBounds, Collection<Opening> openings, MapTemplate template, StackedMapTransform transform, Identifier id) {
+        this(dungeonBounds, openings, template, transform, id, PlacementKey.of(id, transform));
+    }
+
+    /**
+     * @param key The key for this placement. Must match id and transform.
+     */
+    protected DungeonPiece(BlockBounds dungeonBounds, Collection<Opening> openings, MapTemplate template, StackedMapTransform transform, Identifier id, PlacementKey key) {
         this.dungeonBounds = dungeonBounds;
-        this.openings = new HashSet<>(openings);
+        this.openings = new LinkedHashSet<>(openings); // Linked, so picking a random opening is the same every run
         this.template = template;
         this.transform = transform;
         this.id = id;
+        this.key = key;
     }
 
     /**
@@ -131,6 +143,10 @@ public class DungeonPiece {
         return openings.toList();
     }
 
+    public Identifier id() {
+        return id;
+    }
+
     public BlockBounds dungeonBounds() {
         return dungeonBounds;
     }
@@ -172,15 +188,18 @@ public class DungeonPiece {
                '}';
     }
 
+    /**
+     * Pieces are equal when they're the same piece in the same place. Everything else follows from that.
+     */
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof DungeonPiece that)) return false;
-        return Objects.equals(dungeonBounds, that.dungeonBounds) && Objects.equals(openings, that.openings) && Objects.equals(template, that.template) && Objects.equals(transform, that.transform) && Objects.equals(id, that.id);
+        return key.equals(that.key);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(dungeonBounds, openings, template, transform, id);
+        return key.hashCode();
     }
 
     public boolean hasOpening(BlockPos size) {
@@ -192,10 +211,11 @@ public class DungeonPiece {
     }
 
     public boolean equivalentTo(DungeonPiece other) {
-        if (!id.equals(other.id)) return false;
-        if (!dungeonBounds.equals(other.dungeonBounds)) return false;
-        return new HashSet<>(other.openings).containsAll(new HashSet<Opening>(openings)) &&
-               new HashSet<>(openings).containsAll(new HashSet<Opening>(other.openings));
+        return key.equals(other.key);
+    }
+
+    public PlacementKey key() {
+        return key;
     }
 
     @Contract("_->new")
@@ -207,6 +227,17 @@ public class DungeonPiece {
         return template.transformed(transform);
     }
 
+    /**
+     * @return The template, NOT transformed. Don't mutate!
+     */
+    protected MapTemplate template() {
+        return template;
+    }
+
+    protected StackedMapTransform transform() {
+        return transform;
+    }
+
     /**
      * All the possible ways to match this piece's template to an opening by shifting
      * the piece. Must not account for rotations and mirrors.
@@ -228,7 +259,7 @@ public class DungeonPiece {
                     List<Opening> newOpenings = openings.stream()
                             .map(o -> o.transformed(transform))
                             .toList();
-                    DungeonPiece newPiece = new DungeonPiece(transform.transformedBounds(dungeonBounds), newOpenings, template, this.transform.copyWith(transform), id);
+                    DungeonPiece newPiece = new DungeonPiece(transform.transformedBounds(dungeonBounds), newOpenings, template, this.transform.copyWith(transform), id, key.translated(diff.getX(), diff.getY(), diff.getZ()));
                     Opening transformedMatchedOpening = matchedOpening.transformed(transform);
                     return new AStar.ProtoNode(transformedMatchedOpening, newPiece);
                 });
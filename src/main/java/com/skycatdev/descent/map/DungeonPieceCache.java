@@ -0,0 +1,153 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.MapTemplate;
+import xyz.nucleoid.map_templates.MapTransform;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches loaded pieces so that we don't re-read and re-parse templates for every room of every generation.
+ * Pieces are immutable once loaded, so they're safe to hand out to multiple generations at once.
+ * The least recently used pieces are evicted once the cache is full.
+ */
+public class DungeonPieceCache {
+    private final int maxSize;
+    private final Loader loader;
+    /**
+     * Access-ordered, so that the eldest entry is the least recently used. Guarded by {@code this}.
+     */
+    private final LinkedHashMap<Identifier, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    /**
+     * Bumped every time the cache is invalidated, so that loads that started before an invalidation don't get cached.
+     * Guarded by {@code this}.
+     */
+    private int generation = 0;
+
+    public DungeonPieceCache(int maxSize, Loader loader) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be >= 1");
+        }
+        this.maxSize = maxSize;
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Identifier, Entry> eldest) {
+                return size() > DungeonPieceCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the piece with the given id, loading it if it isn't cached.
+     */
+    public Entry get(Identifier id, MinecraftServer server) throws IOException {
+        int loadGeneration;
+        synchronized (this) {
+            @Nullable Entry entry = entries.get(id);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+
+        // Load outside the lock - this is the slow part, and other pieces may be requested in the meantime
+        long startTime = System.nanoTime();
+        Entry entry = Entry.of(new DungeonPiece(loader.load(server, id), id));
+        loadNanos.addAndGet(System.nanoTime() - startTime);
+
+        return put(id, entry, loadGeneration);
+    }
+
+    /**
+     * Cache an already-loaded template, if nothing is cached for that id yet.
+     * @param loadGeneration The {@link DungeonPieceCache#generation()} from before the template was read. If the cache
+     *                       has been invalidated since then, the template won't be cached.
+     */
+    public Entry put(Identifier id, MapTemplate template, int loadGeneration) {
+        long startTime = System.nanoTime();
+        Entry entry = Entry.of(new DungeonPiece(template, id));
+        loadNanos.addAndGet(System.nanoTime() - startTime);
+        return put(id, entry, loadGeneration);
+    }
+
+    private synchronized Entry put(Identifier id, Entry entry, int loadGeneration) {
+        if (loadGeneration != generation) { // Invalidated while loading, this may be stale
+            return entry;
+        }
+        @Nullable Entry existing = entries.putIfAbsent(id, entry);
+        return existing == null ? entry : existing;
+    }
+
+    /**
+     * Drop everything. Call this when the templates may have changed, like on a datapack reload.
+     */
+    public synchronized void invalidateAll() {
+        Descent.LOGGER.debug("Invalidating piece cache. Hits: {}, misses: {}, load time: {}ms", hits(), misses(), loadNanos() / 1_000_000);
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * @return A number that changes every time the cache is invalidated.
+     */
+    public synchronized int generation() {
+        return generation;
+    }
+
+    public synchronized boolean contains(Identifier id) {
+        return entries.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The total time spent loading pieces, in nanoseconds.
+     */
+    public long loadNanos() {
+        return loadNanos.get();
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        MapTemplate load(MinecraftServer server, Identifier id) throws IOException;
+    }
+
+    /**
+     * @param piece    The piece as it is in the template
+     * @param centered The piece, translated so that its dungeon bounds are centered on the origin
+     */
+    public record Entry(DungeonPiece piece, DungeonPiece centered) {
+        public static Entry of(DungeonPiece piece) {
+            Vec3i center = BlockPos.ofFloored(piece.dungeonBounds().center());
+            return new Entry(piece, piece.withTransform(MapTransform.translation(-center.getX(), -center.getY(), -center.getZ())));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.skycatdev.descent.map;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import net.minecraft.util.math.Vec3d;
 
 import java.util.Objects;
@@ -14,11 +15,6 @@ public record Edge(Vec3d u, Vec3d v, double length) {
         return length;
     }
 
-    public static boolean almostEqual(Edge a, Edge b) {
-        return (Delaunay3D.almostEqual(a.u(), b.u()) && Delaunay3D.almostEqual(a.v(), b.v())) ||
-               (Delaunay3D.almostEqual(a.u(), b.v()) && Delaunay3D.almostEqual(a.v(), b.u()));
-    }
-
     public boolean has(Vec3d vec) {
         return u.equals(vec) || v.equals(vec);
     }
@@ -41,6 +37,7 @@ public record Edge(Vec3d u, Vec3d v, double length) {
 
     @Override
     public int hashCode() {
-        return Objects.hash(u) ^ Objects.hash(v);
+        // Has to be the same both ways around, but xor would make every edge from a point to itself collide
+        return HashCommon.mix(u.hashCode()) + HashCommon.mix(v.hashCode());
     }
 }
@@ -0,0 +1,576 @@
+package com.skycatdev.descent.map;
+
+/**
+ * Orientation and insphere tests that always give the right sign, even when the points are almost (or exactly)
+ * coplanar or cospherical. Each test first does the calculation with plain doubles, and only if the result is too
+ * close to zero to trust does it redo it exactly. Scattered rooms almost never need the exact path, but rooms on a grid
+ * hit it all the time, since grids are full of exactly coplanar and cospherical points (a 24x8x24 grid takes about 60
+ * thousand exact insphere tests), and every tie {@link #insphereSymbolic} breaks goes through it too. So neither path
+ * allocates: the exact one works on expansions (sums of doubles) in scratch arrays kept per thread, and moves the points
+ * so the last one is at the origin when that's exact, which keeps the expansions short.
+ * <p>
+ * The error bounds are from Jonathan Shewchuk's "Adaptive Precision Floating-Point Arithmetic and Fast Robust Geometric
+ * Predicates", and the signs follow the same conventions.
+ * Points are given as indices into an array of x, y, z (or x, y for the 2D ones).
+ */
+public class GeometricPredicates {
+    private static final double EPSILON = Math.ulp(1.0) / 2;
+    private static final double ORIENT_3D_BOUND = (7.0 + 56.0 * EPSILON) * EPSILON;
+    private static final double INSPHERE_BOUND = (16.0 + 224.0 * EPSILON) * EPSILON;
+    private static final double ORIENT_2D_BOUND = (3.0 + 16.0 * EPSILON) * EPSILON;
+    private static final double INCIRCLE_BOUND = (10.0 + 96.0 * EPSILON) * EPSILON;
+
+    /**
+     * @param points x, y of each point
+     * @return Positive if a, b and c are counterclockwise, negative if they're clockwise, and zero if they're collinear.
+     * Only the sign is reliable.
+     */
+    public static double orient2d(double[] points, int a, int b, int c) {
+        a *= 2;
+        b *= 2;
+        c *= 2;
+        double detLeft = (points[a] - points[c]) * (points[b + 1] - points[c + 1]);
+        double detRight = (points[a + 1] - points[c + 1]) * (points[b] - points[c]);
+        double det = detLeft - detRight;
+        // When the two sides have different signs, there's no cancellation to worry about
+        double detSum;
+        if (detLeft > 0) {
+            if (detRight <= 0) return det;
+            detSum = detLeft + detRight;
+        } else if (detLeft < 0) {
+            if (detRight >= 0) return det;
+            detSum = -detLeft - detRight;
+        } else {
+            return det;
+        }
+        if (det >= ORIENT_2D_BOUND * detSum || -det >= ORIENT_2D_BOUND * detSum) {
+            return det;
+        }
+        return orient2dExact(points, a, b, c);
+    }
+
+    /**
+     * @param points x, y of each point
+     * @return Positive if d is inside the circle through a, b and c, negative if it's outside, and zero if it's on it.
+     * a, b and c must be counterclockwise, or the sign is flipped. Only the sign is reliable.
+     */
+    public static double incircle(double[] points, int a, int b, int c, int d) {
+        a *= 2;
+        b *= 2;
+        c *= 2;
+        d *= 2;
+        double adx = points[a] - points[d], bdx = points[b] - points[d], cdx = points[c] - points[d];
+        double ady = points[a + 1] - points[d + 1], bdy = points[b + 1] - points[d + 1], cdy = points[c + 1] - points[d + 1];
+
+        double bdxcdy = bdx * cdy, cdxbdy = cdx * bdy;
+        double cdxady = cdx * ady, adxcdy = adx * cdy;
+        double adxbdy = adx * bdy, bdxady = bdx * ady;
+        double alift = adx * adx + ady * ady;
+        double blift = bdx * bdx + bdy * bdy;
+        double clift = cdx * cdx + cdy * cdy;
+
+        double det = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy) + clift * (adxbdy - bdxady);
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+                           + (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+                           + (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+        if (det > INCIRCLE_BOUND * permanent || -det > INCIRCLE_BOUND * permanent) {
+            return det;
+        }
+        return incircleExact(points, a, b, c, d);
+    }
+
+    /**
+     * @return Positive if d is below the plane through a, b and c (where a, b and c appear counterclockwise when viewed
+     * from above), negative if it's above, and zero if they're coplanar. Only the sign is reliable.
+     */
+    public static double orient3d(double[] points, int a, int b, int c, int d) {
+        a *= 3;
+        b *= 3;
+        c *= 3;
+        d *= 3;
+        double adx = points[a] - points[d], bdx = points[b] - points[d], cdx = points[c] - points[d];
+        double ady = points[a + 1] - points[d + 1], bdy = points[b + 1] - points[d + 1], cdy = points[c + 1] - points[d + 1];
+        double adz = points[a + 2] - points[d + 2], bdz = points[b + 2] - points[d + 2], cdz = points[c + 2] - points[d + 2];
+
+        double bdxcdy = bdx * cdy, cdxbdy = cdx * bdy;
+        double cdxady = cdx * ady, adxcdy = adx * cdy;
+        double adxbdy = adx * bdy, bdxady = bdx * ady;
+
+        double det = adz * (bdxcdy - cdxbdy) + bdz * (cdxady - adxcdy) + cdz * (adxbdy - bdxady);
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * Math.abs(adz)
+                           + (Math.abs(cdxady) + Math.abs(adxcdy)) * Math.abs(bdz)
+                           + (Math.abs(adxbdy) + Math.abs(bdxady)) * Math.abs(cdz);
+        if (det > ORIENT_3D_BOUND * permanent || -det > ORIENT_3D_BOUND * permanent) {
+            return det;
+        }
+        return orient3dExact(points, a, b, c, d);
+    }
+
+    /**
+     * @return Positive if e is inside the sphere through a, b, c and d, negative if it's outside, and zero if it's on it.
+     * a, b, c and d must be positively oriented ({@link #orient3d} > 0), or the sign is flipped. Only the sign is reliable.
+     */
+    public static double insphere(double[] points, int a, int b, int c, int d, int e) {
+        a *= 3;
+        b *= 3;
+        c *= 3;
+        d *= 3;
+        e *= 3;
+        double aex = points[a] - points[e], bex = points[b] - points[e], cex = points[c] - points[e], dex = points[d] - points[e];
+        double aey = points[a + 1] - points[e + 1], bey = points[b + 1] - points[e + 1], cey = points[c + 1] - points[e + 1], dey = points[d + 1] - points[e + 1];
+        double aez = points[a + 2] - points[e + 2], bez = points[b + 2] - points[e + 2], cez = points[c + 2] - points[e + 2], dez = points[d + 2] - points[e + 2];
+
+        double aexbey = aex * bey, bexaey = bex * aey;
+        double bexcey = bex * cey, cexbey = cex * bey;
+        double cexdey = cex * dey, dexcey = dex * cey;
+        double dexaey = dex * aey, aexdey = aex * dey;
+        double aexcey = aex * cey, cexaey = cex * aey;
+        double bexdey = bex * dey, dexbey = dex * bey;
+        double ab = aexbey - bexaey;
+        double bc = bexcey - cexbey;
+        double cd = cexdey - dexcey;
+        double da = dexaey - aexdey;
+        double ac = aexcey - cexaey;
+        double bd = bexdey - dexbey;
+
+        double abc = aez * bc - bez * ac + cez * ab;
+        double bcd = bez * cd - cez * bd + dez * bc;
+        double cda = cez * da + dez * ac + aez * cd;
+        double dab = dez * ab + aez * bd + bez * da;
+
+        double alift = aex * aex + aey * aey + aez * aez;
+        double blift = bex * bex + bey * bey + bez * bez;
+        double clift = cex * cex + cey * cey + cez * cez;
+        double dlift = dex * dex + dey * dey + dez * dez;
+
+        double det = (dlift * abc - clift * dab) + (blift * cda - alift * bcd);
+
+        double aezplus = Math.abs(aez), bezplus = Math.abs(bez), cezplus = Math.abs(cez), dezplus = Math.abs(dez);
+        double aexbeyplus = Math.abs(aexbey), bexaeyplus = Math.abs(bexaey);
+        double bexceyplus = Math.abs(bexcey), cexbeyplus = Math.abs(cexbey);
+        double cexdeyplus = Math.abs(cexdey), dexceyplus = Math.abs(dexcey);
+        double dexaeyplus = Math.abs(dexaey), aexdeyplus = Math.abs(aexdey);
+        double aexceyplus = Math.abs(aexcey), cexaeyplus = Math.abs(cexaey);
+        double bexdeyplus = Math.abs(bexdey), dexbeyplus = Math.abs(dexbey);
+        double permanent = ((cexdeyplus + dexceyplus) * bezplus
+                            + (dexbeyplus + bexdeyplus) * cezplus
+                            + (bexceyplus + cexbeyplus) * dezplus) * alift
+                           + ((dexaeyplus + aexdeyplus) * cezplus
+                              + (aexceyplus + cexaeyplus) * dezplus
+                              + (cexdeyplus + dexceyplus) * aezplus) * blift
+                           + ((aexbeyplus + bexaeyplus) * dezplus
+                              + (bexdeyplus + dexbeyplus) * aezplus
+                              + (dexaeyplus + aexdeyplus) * bezplus) * clift
+                           + ((bexceyplus + cexbeyplus) * aezplus
+                              + (cexaeyplus + aexceyplus) * bezplus
+                              + (aexbeyplus + bexaeyplus) * cezplus) * dlift;
+        if (det > INSPHERE_BOUND * permanent || -det > INSPHERE_BOUND * permanent) {
+            return det;
+        }
+        return insphereExact(points, a, b, c, d, e);
+    }
+
+    /**
+     * Like {@link #insphere}, but never zero, so a point exactly on the sphere is still either inside or outside. That
+     * makes the Delaunay triangulation unique, even when lots of rooms are on one sphere (like on a grid), so it comes
+     * out the same no matter what order the points are inserted in or how the work is split up.
+     * <p>
+     * Ties are broken with Simulation of Simplicity (Edelsbrunner and Mucke): every point is treated as if it were
+     * lifted off the paraboloid by a tiny amount, where each point's amount dwarfs those of all the points with smaller
+     * indices. The determinant is linear in each lift, so the sign comes from the biggest index whose lift changes it.
+     * Lifting e pushes it outside. Lifting one of the others pulls the sphere outwards around e if e is on that point's
+     * side of the face opposite it, which is an {@link #orient3d} with e swapped in.
+     * @return Positive if e is inside the sphere through a, b, c and d, and negative if it's outside. a, b, c and d must
+     * be positively oriented, and all five must be different. Only the sign is reliable.
+     */
+    public static double insphereSymbolic(double[] points, int a, int b, int c, int d, int e) {
+        double det = insphere(points, a, b, c, d, e);
+        if (det != 0) {
+            return det;
+        }
+        int highest = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            // The next biggest index
+            int next = -1;
+            if (a < highest) next = Math.max(next, a);
+            if (b < highest) next = Math.max(next, b);
+            if (c < highest) next = Math.max(next, c);
+            if (d < highest) next = Math.max(next, d);
+            if (e < highest) next = Math.max(next, e);
+            highest = next;
+            if (highest == e) {
+                return -1;
+            }
+            double orientation = orient3d(points, highest == a ? e : a, highest == b ? e : b, highest == c ? e : c, highest == d ? e : d);
+            if (orientation != 0) {
+                return orientation;
+            }
+        }
+        // e can only be on the planes of two of the faces, or it would be one of the corners
+        throw new IllegalArgumentException("Points aren't different, or a, b, c and d are flat");
+    }
+
+    /**
+     * Same as {@link #orient2d}, but exact.
+     * @param a Already multiplied by 2
+     */
+    private static double orient2dExact(double[] points, int a, int b, int c) {
+        Expansions expansions = EXPANSIONS.get();
+        expansions.load(points, 2, 3, a, b, c, 0, 0);
+        expansions.computeTriples();
+        // a, b, c is the first triple
+        return expansions.triples[expansions.tripleLengths[0] - 1];
+    }
+
+    /**
+     * Same as {@link #incircle}, but exact.
+     * @param a Already multiplied by 2
+     */
+    private static double incircleExact(double[] points, int a, int b, int c, int d) {
+        Expansions expansions = EXPANSIONS.get();
+        expansions.load(points, 2, 4, a, b, c, d, 0);
+        expansions.computeTriples();
+        return expansions.liftedSum();
+    }
+
+    /**
+     * Same as {@link #orient3d}, but exact.
+     * @param a Already multiplied by 3
+     */
+    private static double orient3dExact(double[] points, int a, int b, int c, int d) {
+        Expansions expansions = EXPANSIONS.get();
+        expansions.load(points, 3, 4, a, b, c, d, 0);
+        expansions.computeTriples();
+        int length = expansions.orientation(0, 1, 2, 3);
+        return expansions.quad[length - 1];
+    }
+
+    /**
+     * Same as {@link #insphere}, but exact.
+     * @param a Already multiplied by 3
+     */
+    private static double insphereExact(double[] points, int a, int b, int c, int d, int e) {
+        Expansions expansions = EXPANSIONS.get();
+        expansions.load(points, 3, 5, a, b, c, d, e);
+        expansions.computeTriples();
+        return expansions.liftedSum();
+    }
+
+    // Exact arithmetic on expansions, also from Shewchuk's paper: a number is kept as a sum of doubles that don't
+    // overlap, smallest first, so the last one has the sign of the whole thing. Sums and products of doubles are split
+    // into the rounded result and the error, which is exactly representable too. Nothing here allocates.
+
+    private static final double SPLITTER = 134217729.0; // 2^27 + 1, for splitting a double into two 26-bit halves
+    /**
+     * Which slot the 2x2 minor of points p < q goes in, at p * 5 + q
+     */
+    private static final int[] PAIRS = new int[5 * 5];
+    /**
+     * Which slot the 3x3 minor of points p < q < r goes in, at (p * 5 + q) * 5 + r
+     */
+    private static final int[] TRIPLES = new int[5 * 5 * 5];
+    private static final ThreadLocal<Expansions> EXPANSIONS = ThreadLocal.withInitial(Expansions::new);
+
+    static {
+        int pairs = 0;
+        int triples = 0;
+        for (int p = 0; p < 5; p++) {
+            for (int q = p + 1; q < 5; q++) {
+                PAIRS[p * 5 + q] = pairs++;
+                for (int r = q + 1; r < 5; r++) {
+                    TRIPLES[(p * 5 + q) * 5 + r] = triples++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The error of x = a + b, so that a + b = x + the error exactly
+     */
+    private static double sumTail(double a, double b, double x) {
+        double bVirtual = x - a;
+        double aVirtual = x - bVirtual;
+        return (a - aVirtual) + (b - bVirtual);
+    }
+
+    /**
+     * @return The error of x = a * b, so that a * b = x + the error exactly
+     */
+    private static double productTail(double a, double b, double x) {
+        double c = SPLITTER * b;
+        double bHigh = c - (c - b);
+        return productTail(a, x, bHigh, b - bHigh);
+    }
+
+    private static double productTail(double a, double x, double bHigh, double bLow) {
+        double c = SPLITTER * a;
+        double aHigh = c - (c - a);
+        double aLow = a - aHigh;
+        double error = x - aHigh * bHigh - aLow * bHigh - aHigh * bLow;
+        return aLow * bLow - error;
+    }
+
+    /**
+     * h = e * b, leaving out zeros. h can't be e.
+     * @return How long h is
+     */
+    private static int scale(double[] e, int eStart, int eLength, double b, double[] h, int hStart) {
+        double c = SPLITTER * b;
+        double bHigh = c - (c - b);
+        double bLow = b - bHigh;
+        int hLength = 0;
+        double q = e[eStart] * b;
+        double tail = productTail(e[eStart], q, bHigh, bLow);
+        if (tail != 0) h[hStart + hLength++] = tail;
+        for (int i = 1; i < eLength; i++) {
+            double product = e[eStart + i] * b;
+            double productTail = productTail(e[eStart + i], product, bHigh, bLow);
+            double sum = q + productTail;
+            tail = sumTail(q, productTail, sum);
+            if (tail != 0) h[hStart + hLength++] = tail;
+            q = product + sum;
+            tail = sum - (q - product);
+            if (tail != 0) h[hStart + hLength++] = tail;
+        }
+        if (q != 0 || hLength == 0) h[hStart + hLength++] = q;
+        return hLength;
+    }
+
+    /**
+     * h = e + f, leaving out zeros. h can't be e or f.
+     * @return How long h is
+     */
+    private static int sum(double[] e, int eStart, int eLength, double[] f, int fStart, int fLength, double[] h, int hStart) {
+        int ei = 0;
+        int fi = 0;
+        int hLength = 0;
+        double eNow = e[eStart];
+        double fNow = f[fStart];
+        double q;
+        // Always take whichever is smaller next
+        if ((fNow > eNow) == (fNow > -eNow)) {
+            q = eNow;
+            eNow = ++ei < eLength ? e[eStart + ei] : 0;
+        } else {
+            q = fNow;
+            fNow = ++fi < fLength ? f[fStart + fi] : 0;
+        }
+        while (ei < eLength || fi < fLength) {
+            double next;
+            if (fi == fLength || ei < eLength && (fNow > eNow) == (fNow > -eNow)) {
+                next = q + eNow;
+                double tail = sumTail(q, eNow, next);
+                if (tail != 0) h[hStart + hLength++] = tail;
+                eNow = ++ei < eLength ? e[eStart + ei] : 0;
+            } else {
+                next = q + fNow;
+                double tail = sumTail(q, fNow, next);
+                if (tail != 0) h[hStart + hLength++] = tail;
+                fNow = ++fi < fLength ? f[fStart + fi] : 0;
+            }
+            q = next;
+        }
+        if (q != 0 || hLength == 0) h[hStart + hLength++] = q;
+        return hLength;
+    }
+
+    /**
+     * @return Whether a - b is exact
+     */
+    private static boolean differenceIsExact(double a, double b) {
+        return sumTail(a, -b, a - b) == 0;
+    }
+
+    /**
+     * Scratch space for the exact predicates, one per thread. Both predicates are cofactor expansions of the same kind of
+     * matrix (a row of x, y, z, x^2 + y^2 + z^2, 1 for each point, or x, y, x^2 + y^2, 1 in 2D), so they share the
+     * minors. 2D points get a z of 1, which makes the 3x3 minors 2D orientations.
+     */
+    private static final class Expansions {
+        final double[] x = new double[5];
+        final double[] y = new double[5];
+        final double[] z = new double[5];
+        final double[] twoLeft = new double[2];
+        final double[] twoRight = new double[2];
+        final double[] pairs = new double[10 * 4];
+        final int[] pairLengths = new int[10];
+        final double[] triples = new double[10 * 24];
+        final int[] tripleLengths = new int[10];
+        final double[] eightA = new double[8];
+        final double[] eightB = new double[8];
+        final double[] sixteen = new double[16];
+        final double[] fortyEightA = new double[48];
+        final double[] fortyEightB = new double[48];
+        final double[] quad = new double[96];
+        final double[] scaled = new double[192];
+        final double[] xLift = new double[384];
+        final double[] yLift = new double[384];
+        final double[] zLift = new double[384];
+        final double[] xyLift = new double[768];
+        final double[] lift = new double[1152];
+        double[] total = new double[5 * 1152];
+        double[] nextTotal = new double[5 * 1152];
+        int dimensions;
+        int count;
+        /**
+         * Whether the last point was moved to the origin
+         */
+        boolean translated;
+
+        /**
+         * Copies the points. If the last one can be moved to the origin exactly, which it can whenever the points are
+         * close together or on a grid, it is, so everything multiplied by its coordinates drops out.
+         * @param count How many of a, b, c, d and e to use
+         */
+        void load(double[] points, int dimensions, int count, int a, int b, int c, int d, int e) {
+            this.dimensions = dimensions;
+            this.count = count;
+            for (int i = 0; i < count; i++) {
+                int index = switch (i) {
+                    case 0 -> a;
+                    case 1 -> b;
+                    case 2 -> c;
+                    case 3 -> d;
+                    default -> e;
+                };
+                x[i] = points[index];
+                y[i] = points[index + 1];
+                z[i] = dimensions == 3 ? points[index + 2] : 1;
+            }
+            int last = count - 1;
+            translated = true;
+            for (int i = 0; i < last && translated; i++) {
+                translated = differenceIsExact(x[i], x[last]) && differenceIsExact(y[i], y[last])
+                             && (dimensions == 2 || differenceIsExact(z[i], z[last]));
+            }
+            if (translated) {
+                for (int i = 0; i < last; i++) {
+                    x[i] -= x[last];
+                    y[i] -= y[last];
+                    if (dimensions == 3) z[i] -= z[last];
+                }
+                x[last] = 0;
+                y[last] = 0;
+                if (dimensions == 3) z[last] = 0;
+            }
+        }
+
+        /**
+         * Fills in the minors x_p * y_q - x_q * y_p, and then z_p * [q r] - z_q * [p r] + z_r * [p q], for every pair and
+         * triple of the loaded points
+         */
+        void computeTriples() {
+            for (int p = 0; p < count; p++) {
+                for (int q = p + 1; q < count; q++) {
+                    int pair = PAIRS[p * 5 + q];
+                    int leftLength = twoProduct(x[p], y[q], twoLeft);
+                    int rightLength = twoProduct(-x[q], y[p], twoRight);
+                    pairLengths[pair] = sum(twoLeft, 0, leftLength, twoRight, 0, rightLength, pairs, pair * 4);
+                }
+            }
+            for (int p = 0; p < count; p++) {
+                for (int q = p + 1; q < count; q++) {
+                    for (int r = q + 1; r < count; r++) {
+                        int qr = PAIRS[q * 5 + r], pr = PAIRS[p * 5 + r], pq = PAIRS[p * 5 + q];
+                        int aLength = scale(pairs, qr * 4, pairLengths[qr], z[p], eightA, 0);
+                        int bLength = scale(pairs, pr * 4, pairLengths[pr], -z[q], eightB, 0);
+                        int abLength = sum(eightA, 0, aLength, eightB, 0, bLength, sixteen, 0);
+                        int cLength = scale(pairs, pq * 4, pairLengths[pq], z[r], eightA, 0);
+                        int triple = TRIPLES[(p * 5 + q) * 5 + r];
+                        tripleLengths[triple] = sum(sixteen, 0, abLength, eightA, 0, cLength, triples, triple * 24);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Puts [p q r] - [p q s] + [p r s] - [q r s], the 4x4 minor of x, y, z, 1, in {@link #quad}. That's
+         * {@link #orient3d} of p, q, r and s.
+         * @return How long it is
+         */
+        int orientation(int p, int q, int r, int s) {
+            int pqr = TRIPLES[(p * 5 + q) * 5 + r], pqs = TRIPLES[(p * 5 + q) * 5 + s];
+            int prs = TRIPLES[(p * 5 + r) * 5 + s], qrs = TRIPLES[(q * 5 + r) * 5 + s];
+            int aLength = sum(triples, pqr * 24, tripleLengths[pqr], negate(triples, pqs * 24, tripleLengths[pqs], fortyEightB), 0, tripleLengths[pqs], fortyEightA, 0);
+            int bLength = sum(triples, prs * 24, tripleLengths[prs], negate(triples, qrs * 24, tripleLengths[qrs], quad), 0, tripleLengths[qrs], fortyEightB, 0);
+            return sum(fortyEightA, 0, aLength, fortyEightB, 0, bLength, quad, 0);
+        }
+
+        /**
+         * Expands the whole determinant along the lift column: each point's lift times the minor of the others.
+         * @return The determinant's sign
+         */
+        double liftedSum() {
+            double[] total = this.total;
+            double[] nextTotal = this.nextTotal;
+            total[0] = 0;
+            int totalLength = 1;
+            // When the last point is at the origin its lift is zero
+            int points = translated ? count - 1 : count;
+            for (int i = 0; i < points; i++) {
+                double[] minor;
+                int minorStart;
+                int minorLength;
+                if (dimensions == 3) {
+                    minorLength = orientation(i == 0 ? 1 : 0, i <= 1 ? 2 : 1, i <= 2 ? 3 : 2, i <= 3 ? 4 : 3);
+                    minor = quad;
+                    minorStart = 0;
+                } else {
+                    int triple = TRIPLES[((i == 0 ? 1 : 0) * 5 + (i <= 1 ? 2 : 1)) * 5 + (i <= 2 ? 3 : 2)];
+                    minor = triples;
+                    minorStart = triple * 24;
+                    minorLength = tripleLengths[triple];
+                }
+                // Alternating signs, starting with - in 3D and + in 2D
+                double sign = (i % 2 == 0) == (dimensions == 3) ? -1 : 1;
+                int scaledLength = scale(minor, minorStart, minorLength, sign * x[i], scaled, 0);
+                int xLength = scale(scaled, 0, scaledLength, x[i], xLift, 0);
+                scaledLength = scale(minor, minorStart, minorLength, sign * y[i], scaled, 0);
+                int yLength = scale(scaled, 0, scaledLength, y[i], yLift, 0);
+                int liftLength;
+                double[] liftResult;
+                if (dimensions == 3) {
+                    int xyLength = sum(xLift, 0, xLength, yLift, 0, yLength, xyLift, 0);
+                    scaledLength = scale(minor, minorStart, minorLength, sign * z[i], scaled, 0);
+                    int zLength = scale(scaled, 0, scaledLength, z[i], zLift, 0);
+                    liftLength = sum(xyLift, 0, xyLength, zLift, 0, zLength, lift, 0);
+                    liftResult = lift;
+                } else {
+                    liftLength = sum(xLift, 0, xLength, yLift, 0, yLength, xyLift, 0);
+                    liftResult = xyLift;
+                }
+                totalLength = sum(total, 0, totalLength, liftResult, 0, liftLength, nextTotal, 0);
+                double[] swap = total;
+                total = nextTotal;
+                nextTotal = swap;
+            }
+            return total[totalLength - 1];
+        }
+
+        /**
+         * @return h, which is now -e
+         */
+        private static double[] negate(double[] e, int eStart, int eLength, double[] h) {
+            for (int i = 0; i < eLength; i++) {
+                h[i] = -e[eStart + i];
+            }
+            return h;
+        }
+
+        /**
+         * h = a * b
+         * @return How long h is
+         */
+        private static int twoProduct(double a, double b, double[] h) {
+            double product = a * b;
+            double tail = productTail(a, b, product);
+            if (tail == 0) {
+                h[0] = product;
+                return 1;
+            }
+            h[0] = tail;
+            h[1] = product;
+            return 2;
+        }
+    }
+}
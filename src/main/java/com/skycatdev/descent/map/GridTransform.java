@@ -0,0 +1,93 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapTransform;
+
+/**
+ * A {@link MapTransform} that only moves, rotates and mirrors blocks, as an integer matrix and offset. Unlike a
+ * {@link MapTransform}, it can be undone, so the part of a template that ends up in some box can be found without
+ * transforming the whole template.
+ */
+public final class GridTransform {
+    /**
+     * Row major. Every row and column has exactly one 1 or -1, and the rest are 0.
+     */
+    private final int[] matrix;
+    private final int offsetX;
+    private final int offsetY;
+    private final int offsetZ;
+
+    private GridTransform(int[] matrix, int offsetX, int offsetY, int offsetZ) {
+        this.matrix = matrix;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.offsetZ = offsetZ;
+    }
+
+    /**
+     * Work out the matrix from where the transform puts the origin and one block along each axis.
+     * @param bounds Where the transform will be used. Its corners are checked, to make sure the transform really is
+     *               the same as the matrix there.
+     * @return {@code null} if the transform does anything but move, rotate and mirror
+     */
+    public static @Nullable GridTransform of(MapTransform transform, BlockBounds bounds) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        transform.transformPoint(pos.set(0, 0, 0));
+        int offsetX = pos.getX(), offsetY = pos.getY(), offsetZ = pos.getZ();
+        int[] matrix = new int[9];
+        for (int axis = 0; axis < 3; axis++) {
+            transform.transformPoint(pos.set(axis == 0 ? 1 : 0, axis == 1 ? 1 : 0, axis == 2 ? 1 : 0));
+            matrix[axis] = pos.getX() - offsetX;
+            matrix[3 + axis] = pos.getY() - offsetY;
+            matrix[6 + axis] = pos.getZ() - offsetZ;
+        }
+        for (int i = 0; i < 3; i++) {
+            int inRow = 0, inColumn = 0;
+            for (int j = 0; j < 3; j++) {
+                inRow += Math.abs(matrix[i * 3 + j]);
+                inColumn += Math.abs(matrix[j * 3 + i]);
+                if (Math.abs(matrix[i * 3 + j]) > 1) return null;
+            }
+            if (inRow != 1 || inColumn != 1) return null;
+        }
+
+        GridTransform grid = new GridTransform(matrix, offsetX, offsetY, offsetZ);
+        BlockPos min = bounds.min();
+        BlockPos max = bounds.max();
+        BlockPos.Mutable expected = new BlockPos.Mutable();
+        for (int corner = 0; corner < 8; corner++) {
+            pos.set((corner & 1) == 0 ? min.getX() : max.getX(), (corner & 2) == 0 ? min.getY() : max.getY(), (corner & 4) == 0 ? min.getZ() : max.getZ());
+            transform.transformPoint(expected.set(pos));
+            if (!grid.transformPoint(pos).equals(expected)) return null;
+        }
+        return grid;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public BlockPos.Mutable transformPoint(BlockPos.Mutable pos) {
+        int x = pos.getX(), y = pos.getY(), z = pos.getZ();
+        return pos.set(matrix[0] * x + matrix[1] * y + matrix[2] * z + offsetX,
+                matrix[3] * x + matrix[4] * y + matrix[5] * z + offsetY,
+                matrix[6] * x + matrix[7] * y + matrix[8] * z + offsetZ);
+    }
+
+    /**
+     * @return The bounds of everything that this transforms into {@code bounds}
+     */
+    public BlockBounds inverseBounds(BlockBounds bounds) {
+        BlockPos.Mutable min = inverseTransformPoint(bounds.min().mutableCopy());
+        BlockPos.Mutable max = inverseTransformPoint(bounds.max().mutableCopy());
+        // Rotating and mirroring a box's corners still gives opposite corners, just maybe not min and max
+        return BlockBounds.of(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    private BlockPos.Mutable inverseTransformPoint(BlockPos.Mutable pos) {
+        int x = pos.getX() - offsetX, y = pos.getY() - offsetY, z = pos.getZ() - offsetZ;
+        // The matrix only rotates and mirrors, so its inverse is its transpose
+        return pos.set(matrix[0] * x + matrix[3] * y + matrix[6] * z,
+                matrix[1] * x + matrix[4] * y + matrix[7] * z,
+                matrix[2] * x + matrix[5] * y + matrix[8] * z);
+    }
+}
@@ -0,0 +1,122 @@
+package com.skycatdev.descent.map;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * A binary min-heap where every value has a key, and each key is in the heap at most once. Offering a better value for a
+ * key that's already in the heap moves it up in place (decrease-key), so both that and polling are O(log n).
+ * Values that compare equal come out in the order they were offered.
+ * Not thread safe.
+ * @param <K> The key, which needs working {@link Object#equals} and {@link Object#hashCode}
+ * @param <V> The value
+ */
+public class IndexedHeap<K, V> {
+    private final Comparator<? super V> comparator;
+    private final Map<K, Integer> indices = new HashMap<>();
+    private final ArrayList<Slot<K, V>> heap = new ArrayList<>();
+    private long nextSequence = 0;
+
+    public IndexedHeap(Comparator<? super V> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Add the value, or replace the value already there for this key if the new one is smaller.
+     * @return {@code true} if the value was added, {@code false} if there was already a value for the key that was at least as small
+     */
+    public boolean offer(K key, V value) {
+        @Nullable Integer index = indices.get(key);
+        if (index == null) {
+            heap.add(new Slot<>(key, value, nextSequence++));
+            indices.put(key, heap.size() - 1);
+            siftUp(heap.size() - 1);
+            return true;
+        }
+        Slot<K, V> old = heap.get(index);
+        if (comparator.compare(value, old.value()) >= 0) {
+            return false;
+        }
+        heap.set(index, new Slot<>(key, value, nextSequence++));
+        siftUp(index);
+        return true;
+    }
+
+    /**
+     * @return The smallest value, or {@code null} if the heap is empty
+     */
+    public @Nullable V poll() {
+        if (heap.isEmpty()) return null;
+        Slot<K, V> top = heap.get(0);
+        Slot<K, V> last = heap.remove(heap.size() - 1);
+        indices.remove(top.key());
+        if (!heap.isEmpty()) {
+            heap.set(0, last);
+            indices.put(last.key(), 0);
+            siftDown(0);
+        }
+        return top.value();
+    }
+
+    public @Nullable V get(K key) {
+        @Nullable Integer index = indices.get(key);
+        return index == null ? null : heap.get(index).value();
+    }
+
+    public boolean contains(K key) {
+        return indices.containsKey(key);
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    private boolean less(Slot<K, V> a, Slot<K, V> b) {
+        int compared = comparator.compare(a.value(), b.value());
+        return compared < 0 || (compared == 0 && a.sequence() < b.sequence());
+    }
+
+    private void siftUp(int index) {
+        Slot<K, V> slot = heap.get(index);
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            Slot<K, V> parent = heap.get(parentIndex);
+            if (!less(slot, parent)) break;
+            heap.set(index, parent);
+            indices.put(parent.key(), index);
+            index = parentIndex;
+        }
+        heap.set(index, slot);
+        indices.put(slot.key(), index);
+    }
+
+    private void siftDown(int index) {
+        Slot<K, V> slot = heap.get(index);
+        int size = heap.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && less(heap.get(child + 1), heap.get(child))) {
+                child++;
+            }
+            Slot<K, V> smallest = heap.get(child);
+            if (!less(smallest, slot)) break;
+            heap.set(index, smallest);
+            indices.put(smallest.key(), index);
+            index = child;
+        }
+        heap.set(index, slot);
+        indices.put(slot.key(), index);
+    }
+
+    /**
+     * @param sequence When this was offered, for breaking ties
+     */
+    private record Slot<K, V>(K key, V value, long sequence) {
+    }
+}
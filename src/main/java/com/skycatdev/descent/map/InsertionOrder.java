@@ -0,0 +1,138 @@
+package com.skycatdev.descent.map;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Orders points for inserting into a {@link TetrahedralMesh} (biased randomized insertion order, or BRIO). Points are
+ * split into rounds that each double in size, randomly, and each round is sorted along a Hilbert curve. The random
+ * rounds keep the mesh from getting lopsided like a fully sorted order would, and sorting within a round means each
+ * point is usually right next to the last one, so walking to it is short and the cells it touches are still in cache.
+ */
+public class InsertionOrder {
+    /**
+     * Fixed, so the same rooms are always inserted in the same order
+     */
+    private static final long SEED = 0x5EED_D35C_E47L;
+    /**
+     * How many bits each axis gets on the Hilbert curve
+     */
+    private static final int BITS = 10;
+    private static final int MAX_ROUNDS = 15;
+    /**
+     * Each point's position is packed into 21 bits of its sort key
+     */
+    public static final int MAX_POINTS = 1 << 21;
+
+    /**
+     * @param points x, y, z of each point
+     * @param count  How many points to order, from the start of points
+     * @return The indices of the points, in the order they should be inserted
+     */
+    public static int[] brio(double[] points, int count) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = i;
+        }
+        return brio(points, indices);
+    }
+
+    /**
+     * @param points  x, y, z of each point
+     * @param indices Which points to order
+     * @return The same indices, in the order they should be inserted
+     * @throws IllegalArgumentException If there are more than {@link #MAX_POINTS} indices
+     */
+    public static int[] brio(double[] points, int[] indices) {
+        int count = indices.length;
+        if (count > MAX_POINTS) {
+            throw new IllegalArgumentException(String.format("Can't order more than %d points, got %d", MAX_POINTS, count));
+        }
+        double minX, minY, minZ;
+        minX = minY = minZ = Double.MAX_VALUE;
+        double maxX, maxY, maxZ;
+        maxX = maxY = maxZ = -Double.MAX_VALUE;
+        for (int index : indices) {
+            int i = index * 3;
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+            minZ = Math.min(minZ, points[i + 2]);
+            maxZ = Math.max(maxZ, points[i + 2]);
+        }
+        // Same scale for every axis, so the curve isn't stretched
+        double size = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        double scale = size > 0 ? ((1 << BITS) - 1) / size : 0;
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        // Sort by round, then along the curve, then by position in indices. Rounds take 4 bits, the curve 30, and the position 21.
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            // Half the points are in the last round, a quarter in the one before, and so on
+            int round = 0;
+            while (round < MAX_ROUNDS && random.nextBoolean()) {
+                round++;
+            }
+            int point = indices[i] * 3;
+            int x = (int) ((points[point] - minX) * scale);
+            int y = (int) ((points[point + 1] - minY) * scale);
+            int z = (int) ((points[point + 2] - minZ) * scale);
+            keys[i] = (long) (MAX_ROUNDS - round) << 51 | hilbertIndex(x, y, z) << 21 | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = indices[(int) (keys[i] & ((1 << 21) - 1))];
+        }
+        return order;
+    }
+
+    /**
+     * @return How far along a 3D Hilbert curve the point is. Each coordinate must fit in {@link #BITS} bits.
+     * @implNote From John Skilling's "Programming the Hilbert curve"
+     */
+    static long hilbertIndex(int x, int y, int z) {
+        // Turn the coordinates into the curve's "transpose"
+        for (int q = 1 << (BITS - 1); q > 1; q >>= 1) {
+            int p = q - 1;
+            if ((x & q) != 0) {
+                x ^= p;
+            }
+            if ((y & q) != 0) {
+                x ^= p;
+            } else {
+                int t = (x ^ y) & p;
+                x ^= t;
+                y ^= t;
+            }
+            if ((z & q) != 0) {
+                x ^= p;
+            } else {
+                int t = (x ^ z) & p;
+                x ^= t;
+                z ^= t;
+            }
+        }
+        // Gray encode
+        y ^= x;
+        z ^= y;
+        int t = 0;
+        for (int q = 1 << (BITS - 1); q > 1; q >>= 1) {
+            if ((z & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        x ^= t;
+        y ^= t;
+        z ^= t;
+
+        // Interleave the bits
+        long index = 0;
+        for (int bit = BITS - 1; bit >= 0; bit--) {
+            index = index << 3 | (x >> bit & 1) << 2 | (y >> bit & 1) << 1 | (z >> bit & 1);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,69 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+
+/**
+ * Checks one point against lots of cached circumspheres at once. The spheres are stored as separate arrays of center x,
+ * y, z and radius squared, indexed by cell. This is only a filter - anything too close to a sphere to call is
+ * {@link #UNSURE}, and should be checked with {@link GeometricPredicates#insphere}. Spheres with a NaN radius are always
+ * unsure.
+ * <p>
+ * Scans over a range of cells use the Vector API when the {@code jdk.incubator.vector} module is there, and plain loops
+ * when it isn't. Checking a handful of cells picked by index is always plain loops, since gathering them into vectors
+ * costs far more than it saves (about five times slower for the up to four neighbors the mesh checks at once). The JVM
+ * only has the module if it's asked for, so servers need {@code --add-modules=jdk.incubator.vector} in their JVM
+ * arguments (before {@code -jar}) to use it. Dev runs and tests already have it. The vector version is in its own
+ * source set, so nothing else is compiled against the incubator module.
+ */
+public abstract class InsphereBatch {
+    public static final byte OUTSIDE = -1;
+    public static final byte UNSURE = 0;
+    public static final byte INSIDE = 1;
+    /**
+     * How far off, relative to the radius squared, a cached sphere might be. Spheres are only cached when they can be
+     * found much more precisely than this.
+     */
+    protected static final double TOLERANCE = 1e-6;
+    private static final InsphereBatch INSTANCE = create();
+
+    public static InsphereBatch get() {
+        return INSTANCE;
+    }
+
+    private static InsphereBatch create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // By name, so nothing touches the vector classes unless the module is there
+                return (InsphereBatch) Class.forName("com.skycatdev.descent.map.VectorInsphereBatch").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                Descent.LOGGER.warn("Couldn't use the Vector API for triangulation, falling back to scalar code", e);
+            }
+        } else {
+            Descent.LOGGER.info("Add --add-modules=jdk.incubator.vector to the JVM arguments to triangulate faster with the Vector API");
+        }
+        return new ScalarInsphereBatch();
+    }
+
+    /**
+     * Check cells {@code from} up to {@code to}. {@code out[i - from]} gets the result for cell i.
+     */
+    public abstract void classify(double x, double y, double z, double[] centerX, double[] centerY, double[] centerZ, double[] radiiSquared, int from, int to, byte[] out);
+
+    /**
+     * Check the first {@code count} cells in {@code cells}. {@code out[i]} gets the result for {@code cells[i]}. Meant
+     * for a few cells at a time, so it never uses vectors.
+     */
+    public final void classify(double x, double y, double z, double[] centerX, double[] centerY, double[] centerZ, double[] radiiSquared, int[] cells, int count, byte[] out) {
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            double dx = centerX[cell] - x, dy = centerY[cell] - y, dz = centerZ[cell] - z;
+            out[i] = classify(dx * dx + dy * dy + dz * dz, radiiSquared[cell]);
+        }
+    }
+
+    protected static byte classify(double distanceSquared, double radiusSquared) {
+        if (distanceSquared < radiusSquared * (1 - TOLERANCE)) return INSIDE;
+        if (distanceSquared > radiusSquared * (1 + TOLERANCE)) return OUTSIDE;
+        return UNSURE; // Including NaN
+    }
+}
@@ -0,0 +1,55 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds minimum spanning trees by going through the edges from shortest to longest, and keeping each one that joins two
+ * trees that weren't joined yet. Which vertices are joined is tracked with a union-find, so after sorting this is almost
+ * linear. See {@link SpanningTree} for when this is used instead of {@link Prim}.
+ */
+public class Kruskal {
+    /**
+     * Finds the same tree as {@link Prim#minimumSpanningTree(List, int, int)}, in the same order. Ties go to whichever
+     * edge is first in the list, like there.
+     * @param vertexCount How many rooms there are. Rooms are numbered from 0.
+     * @param start       The room to grow the tree from
+     * @return The edges of the minimum spanning tree of the rooms reachable from start, in the order Prim would add them
+     */
+    public static List<RoomEdge> minimumSpanningTree(List<RoomEdge> edges, int vertexCount, int start) {
+        double[] lengths = new double[edges.size()];
+        int[] order = new int[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            lengths[i] = edges.get(i).length();
+            order[i] = i;
+        }
+        IntArrays.quickSort(order, (a, b) -> {
+            int compared = Double.compare(lengths[a], lengths[b]);
+            return compared != 0 ? compared : Integer.compare(a, b);
+        });
+
+        UnionFind trees = new UnionFind(vertexCount);
+        boolean[] inTree = new boolean[edges.size()];
+        int joined = 0;
+        for (int i = 0; i < order.length && joined < vertexCount - 1; i++) {
+            RoomEdge edge = edges.get(order[i]);
+            if (trees.union(edge.u(), edge.v())) {
+                inTree[order[i]] = true;
+                joined++;
+            }
+        }
+
+        // Only the tree that has start, and in the order the edges were given so ties still go the same way
+        int root = trees.find(start);
+        List<RoomEdge> tree = new ArrayList<>();
+        for (int i = 0; i < edges.size(); i++) {
+            if (inTree[i] && trees.find(edges.get(i).u()) == root) {
+                tree.add(edges.get(i));
+            }
+        }
+        // Prim on just the tree is cheap, and puts the edges in the order the generator has always used
+        return Prim.minimumSpanningTree(tree, vertexCount, start);
+    }
+}
@@ -0,0 +1,124 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapTemplate;
+import xyz.nucleoid.map_templates.MapTemplateMetadata;
+import xyz.nucleoid.map_templates.MapTransform;
+import xyz.nucleoid.map_templates.TemplateRegion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds one map out of placed pieces. Unlike transforming each piece and merging them together, this works out where
+ * everything goes first and then copies each piece straight into the finished map, so each block is only copied once.
+ */
+public class MapAssembler {
+    private final List<DungeonPiece> pieces = new ArrayList<>();
+
+    @Contract("_->this")
+    public MapAssembler add(DungeonPiece piece) {
+        pieces.add(piece);
+        return this;
+    }
+
+    @Contract("_->this")
+    public MapAssembler addAll(Collection<DungeonPiece> pieces) {
+        this.pieces.addAll(pieces);
+        return this;
+    }
+
+    /**
+     * @return The bounds that the transformed templates of all the pieces take up.
+     */
+    public static BlockBounds boundsOf(Iterable<DungeonPiece> pieces) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (DungeonPiece piece : pieces) {
+            BlockBounds bounds = piece.transform().transformedBounds(piece.template().getBounds());
+            minX = Math.min(minX, bounds.min().getX());
+            minY = Math.min(minY, bounds.min().getY());
+            minZ = Math.min(minZ, bounds.min().getZ());
+            maxX = Math.max(maxX, bounds.max().getX());
+            maxY = Math.max(maxY, bounds.max().getY());
+            maxZ = Math.max(maxZ, bounds.max().getZ());
+        }
+        return BlockBounds.of(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * @return How far up everything needs to move so that nothing within the bounds is below y=0.
+     */
+    public static int groundOffset(BlockBounds bounds) {
+        return Math.max(0, -bounds.min().getY());
+    }
+
+    /**
+     * @return A new map with all the pieces placed in it. If any piece would be below y=0, everything is moved up so
+     * that it isn't.
+     */
+    public MapTemplate build() {
+        if (pieces.isEmpty()) {
+            return MapTemplate.createEmpty();
+        }
+
+        BlockBounds bounds = boundsOf(pieces);
+        int yOffset = groundOffset(bounds);
+        @Nullable MapTransform offset = null;
+        if (yOffset != 0) {
+            Descent.LOGGER.debug("Translating y by {}", yOffset);
+            offset = MapTransform.translation(0, yOffset, 0);
+            bounds = offset.transformedBounds(bounds);
+        }
+
+        MapTemplate map = MapTemplate.createEmpty();
+        map.setBounds(bounds);
+        // Like merging, the first piece wins for the biome and for any data that more than one piece has
+        map.setBiome(pieces.getFirst().template().getBiome());
+        NbtCompound data = map.getMetadata().getData();
+        for (DungeonPiece piece : pieces.reversed()) {
+            data.copyFrom(piece.template().getMetadata().getData());
+        }
+
+        for (DungeonPiece piece : pieces) {
+            copyInto(map, piece, offset == null ? piece.transform() : piece.transform().copyWith(offset));
+        }
+        return map;
+    }
+
+    /**
+     * Copy the blocks, block entities, entities, and regions of the piece's template into the map.
+     */
+    protected static void copyInto(MapTemplate map, DungeonPiece piece, MapTransform transform) {
+        MapTemplate template = piece.template();
+        BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+
+        for (BlockPos pos : template.getBounds()) {
+            BlockState state = template.getBlockState(pos);
+            if (state.isAir()) continue; // Pieces don't overlap, so there's nothing to clear
+            transform.transformPoint(mutablePos.set(pos));
+            map.setBlockState(mutablePos, state);
+
+            @Nullable NbtCompound blockEntity = template.getBlockEntityNbt(pos, mutablePos);
+            if (blockEntity != null) {
+                map.setBlockEntityNbt(mutablePos.toImmutable(), blockEntity);
+            }
+        }
+
+        template.getEntities().forEach(entity -> map.addEntity(entity.transformed(transform)));
+
+        MapTemplateMetadata metadata = map.getMetadata();
+        template.getMetadata().getRegions().forEach(region -> copyRegion(metadata, region, transform));
+    }
+
+    private static void copyRegion(MapTemplateMetadata metadata, TemplateRegion region, MapTransform transform) {
+        metadata.addRegion(region.getMarker(), transform.transformedBounds(region.getBounds()), region.getData().copy());
+    }
+}
@@ -0,0 +1,265 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Triangulates lots of points at once by splitting them into blocks, triangulating each block on its own thread, then
+ * fixing up the seams between them. Gives the same edges as triangulating everything at once. Even when lots of points
+ * are on one sphere (grids of rooms, mostly), {@link GeometricPredicates#insphereSymbolic} breaks the ties the same way
+ * in every block and the seam, so there's only one triangulation they could all be part of.
+ * <p>
+ * A block's tetrahedron is definitely in the full triangulation if its circumsphere is entirely inside the block, since
+ * then no other block's points can be in it. Everything else is near a seam (or the outside). Any vertex that only has
+ * definite tetrahedra around it already has all of its tetrahedra, so only the rest of the vertices, the "seam" vertices,
+ * need to be triangulated again together. Of that triangulation, the tetrahedra that don't have any of the other
+ * vertices in their circumspheres are the missing ones.
+ */
+public class ParallelDelaunay {
+    /**
+     * About how many points each block should have. Bigger blocks have fewer of their points near a seam.
+     */
+    private static final int BLOCK_SIZE = 2048;
+    private static final int MAX_BLOCKS = 64;
+    private static final ForkJoinPool TRIANGULATION_POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Descent Triangulator #" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            null,
+            false);
+
+    /**
+     * @param points The points to triangulate, followed by the four corners of a tetrahedron that encloses them
+     * @param count  How many points there are, not counting the enclosing tetrahedron
+     * @return The edges between the points (not the enclosing tetrahedron) of the Delaunay triangulation, as
+     * {@link RoomEdge#key}s
+     */
+    public static LongOpenHashSet triangulate(double[] points, int count) {
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i++) {
+            vertices[i] = i;
+        }
+        // The same number of blocks no matter how many threads there are, so the seams are always in the same place
+        int pieces = Math.min(MAX_BLOCKS, Integer.highestOneBit(Math.max(1, count / BLOCK_SIZE)));
+        double[] everywhereMin = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double[] everywhereMax = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        List<Block> blocks = new ArrayList<>();
+        split(points, vertices, everywhereMin, everywhereMax, pieces, blocks);
+
+        List<CompletableFuture<BlockResult>> futures = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            futures.add(CompletableFuture.supplyAsync(() -> triangulateBlock(points, count, block), TRIANGULATION_POOL));
+        }
+
+        LongOpenHashSet edges = new LongOpenHashSet();
+        boolean[] onSeam = new boolean[count];
+        IntArrayList seam = new IntArrayList();
+        for (CompletableFuture<BlockResult> future : futures) {
+            BlockResult result = future.join();
+            edges.addAll(result.edges());
+            for (int i = 0; i < result.seam().size(); i++) {
+                int vertex = result.seam().getInt(i);
+                if (!onSeam[vertex]) {
+                    onSeam[vertex] = true;
+                    seam.add(vertex);
+                }
+            }
+        }
+
+        stitch(points, count, seam, onSeam, edges);
+        return edges;
+    }
+
+    /**
+     * Split the vertices in half along the longest side of their bounds until there are enough pieces
+     * @param min The least corner of the space these vertices are in, which can be infinite
+     */
+    private static void split(double[] points, int[] vertices, double[] min, double[] max, int pieces, List<Block> blocks) {
+        if (pieces <= 1 || vertices.length < 2) {
+            blocks.add(new Block(vertices, min, max));
+            return;
+        }
+        double[] from = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] to = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int vertex : vertices) {
+            for (int axis = 0; axis < 3; axis++) {
+                from[axis] = Math.min(from[axis], points[vertex * 3 + axis]);
+                to[axis] = Math.max(to[axis], points[vertex * 3 + axis]);
+            }
+        }
+        int axis = 0;
+        for (int i = 1; i < 3; i++) {
+            if (to[i] - from[i] > to[axis] - from[axis]) {
+                axis = i;
+            }
+        }
+
+        double[] coordinates = new double[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            coordinates[i] = points[vertices[i] * 3 + axis];
+        }
+        Arrays.sort(coordinates);
+        double median = coordinates[coordinates.length / 2];
+        if (coordinates[0] == median) { // Too many points in a line to split here
+            blocks.add(new Block(vertices, min, max));
+            return;
+        }
+
+        IntArrayList below = new IntArrayList();
+        IntArrayList above = new IntArrayList();
+        for (int vertex : vertices) {
+            (points[vertex * 3 + axis] < median ? below : above).add(vertex);
+        }
+        double[] belowMax = max.clone();
+        belowMax[axis] = median;
+        double[] aboveMin = min.clone();
+        aboveMin[axis] = median;
+        split(points, below.toIntArray(), min, belowMax, pieces / 2, blocks);
+        split(points, above.toIntArray(), aboveMin, max, pieces / 2, blocks);
+    }
+
+    private static BlockResult triangulateBlock(double[] points, int count, Block block) {
+        TetrahedralMesh mesh = new TetrahedralMesh(points, count, count + 1, count + 2, count + 3);
+        DelaunayValidator validator = new DelaunayValidator();
+        for (int vertex : InsertionOrder.brio(points, block.vertices())) {
+            mesh.insert(vertex);
+            validator.check(mesh, vertex);
+        }
+
+        LongOpenHashSet edges = new LongOpenHashSet();
+        IntArrayList seam = new IntArrayList();
+        double[] sphere = new double[4];
+        for (int cell = 0; cell < mesh.cellSlots(); cell++) {
+            if (!mesh.isLive(cell)) continue;
+            if (mesh.circumsphere(cell, sphere) && block.surrounds(sphere)) {
+                addEdges(count, mesh, cell, edges);
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    int vertex = mesh.cellVertex(cell, i);
+                    if (vertex < count) {
+                        seam.add(vertex);
+                    }
+                }
+            }
+        }
+        return new BlockResult(edges, seam);
+    }
+
+    /**
+     * Triangulate the seam vertices together, and add the edges of the tetrahedra that are in the full triangulation.
+     */
+    private static void stitch(double[] points, int count, IntArrayList seam, boolean[] onSeam, LongOpenHashSet edges) {
+        TetrahedralMesh mesh = new TetrahedralMesh(points, count, count + 1, count + 2, count + 3);
+        DelaunayValidator validator = new DelaunayValidator();
+        for (int vertex : InsertionOrder.brio(points, seam.toIntArray())) {
+            mesh.insert(vertex);
+            validator.check(mesh, vertex);
+        }
+
+        // Only the vertices that aren't on the seam can be in the way, since the others are in this triangulation
+        IntArrayList notOnSeam = new IntArrayList(count - seam.size());
+        for (int vertex = 0; vertex < count; vertex++) {
+            if (!onSeam[vertex]) {
+                notOnSeam.add(vertex);
+            }
+        }
+        PointGrid others = new PointGrid(points, notOnSeam.toIntArray(), PointGrid.cellSizeFor(points, count, 2));
+
+        // Checking each cell doesn't depend on any other, so split them up too
+        int chunkSize = Math.max(1024, mesh.cellSlots() / (TRIANGULATION_POOL.getParallelism() * 4));
+        List<CompletableFuture<LongOpenHashSet>> futures = new ArrayList<>();
+        for (int start = 0; start < mesh.cellSlots(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, mesh.cellSlots());
+            futures.add(CompletableFuture.supplyAsync(() -> stitchCells(points, count, mesh, from, to, onSeam, others), TRIANGULATION_POOL));
+        }
+        for (CompletableFuture<LongOpenHashSet> future : futures) {
+            edges.addAll(future.join());
+        }
+    }
+
+    /**
+     * @return The edges of the cells from {@code from} up to {@code to} that don't have any of {@code others} in their
+     * circumspheres
+     */
+    private static LongOpenHashSet stitchCells(double[] points, int count, TetrahedralMesh mesh, int from, int to, boolean[] onSeam, PointGrid others) {
+        LongOpenHashSet edges = new LongOpenHashSet();
+        double[] sphere = new double[4];
+        for (int cell = from; cell < to; cell++) {
+            if (!mesh.isLive(cell)) continue;
+            int a = mesh.cellVertex(cell, 0), b = mesh.cellVertex(cell, 1), c = mesh.cellVertex(cell, 2), d = mesh.cellVertex(cell, 3);
+            if ((a < count ? 1 : 0) + (b < count ? 1 : 0) + (c < count ? 1 : 0) + (d < count ? 1 : 0) < 2) continue; // No edges we want
+
+            boolean blocked;
+            if (mesh.circumsphere(cell, sphere)) {
+                double reach = sphere[3] * (1 + 1e-6) + 1e-6;
+                double x = sphere[0], y = sphere[1], z = sphere[2];
+                // Anything clearly outside the sphere isn't worth the exact check
+                double reachSquared = reach * reach;
+                blocked = others.anyInSphere(x, y, z, reach, vertex -> {
+                    double dx = points[vertex * 3] - x, dy = points[vertex * 3 + 1] - y, dz = points[vertex * 3 + 2] - z;
+                    return dx * dx + dy * dy + dz * dz <= reachSquared && GeometricPredicates.insphereSymbolic(points, a, b, c, d, vertex) > 0;
+                });
+            } else { // Can't trust where the sphere is, so check everything
+                blocked = false;
+                for (int vertex = 0; vertex < count && !blocked; vertex++) {
+                    blocked = !onSeam[vertex] && GeometricPredicates.insphereSymbolic(points, a, b, c, d, vertex) > 0;
+                }
+            }
+            if (!blocked) {
+                addEdges(count, mesh, cell, edges);
+            }
+        }
+        return edges;
+    }
+
+    private static void addEdges(int count, TetrahedralMesh mesh, int cell, LongOpenHashSet edges) {
+        for (int i = 0; i < 4; i++) {
+            int u = mesh.cellVertex(cell, i);
+            if (u >= count) continue; // Part of the enclosing tetrahedron
+            for (int j = i + 1; j < 4; j++) {
+                int v = mesh.cellVertex(cell, j);
+                if (v >= count) continue;
+                edges.add(RoomEdge.key(u, v));
+            }
+        }
+    }
+
+    /**
+     * @param vertices The points in this block
+     * @param min      The least corner of the space this block owns. Sides on the outside are infinite.
+     */
+    private record Block(int[] vertices, double[] min, double[] max) {
+        /**
+         * @param sphere The center's x, y, z, and the radius
+         * @return Whether the sphere is entirely inside this block's space, with some room to spare for rounding
+         */
+        boolean surrounds(double[] sphere) {
+            double reach = sphere[3] * (1 + 1e-6) + 1e-6;
+            for (int axis = 0; axis < 3; axis++) {
+                if (sphere[axis] - reach <= min[axis] || sphere[axis] + reach >= max[axis]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param edges The edges of tetrahedra that are definitely in the full triangulation
+     * @param seam  Every vertex of the other tetrahedra, possibly more than once
+     */
+    private record BlockResult(LongOpenHashSet edges, IntArrayList seam) {
+    }
+}
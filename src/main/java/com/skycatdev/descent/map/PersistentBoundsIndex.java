@@ -0,0 +1,117 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.BlockBounds;
+
+/**
+ * An immutable version of {@link BoundsIndex}. Adding to it makes a new index that shares almost everything with the
+ * old one, so every node in a search can cheaply keep an index of the pieces on its own path.
+ * It's a hash array mapped trie from cell to the bounds in that cell, so both adding and checking only touch a handful of
+ * trie nodes per cell, no matter how much is in the index.
+ */
+public final class PersistentBoundsIndex {
+    public static final PersistentBoundsIndex EMPTY = new PersistentBoundsIndex(null);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /**
+     * Either a {@link Branch}, a {@link Leaf}, or {@code null} when empty
+     */
+    private final @Nullable Object root;
+
+    private PersistentBoundsIndex(@Nullable Object root) {
+        this.root = root;
+    }
+
+    /**
+     * Spread out the cell key. This is a bijection, so different cells never end up with the same hash.
+     */
+    private static long hash(long cell) {
+        return HashCommon.mix(cell);
+    }
+
+    private static Object insert(@Nullable Object node, Leaf leaf, int shift) {
+        if (node == null) {
+            return leaf;
+        }
+        if (node instanceof Leaf existing) {
+            if (existing.cell == leaf.cell) {
+                return new Leaf(leaf.cell, leaf.hash, new Bounds(leaf.bounds.head, existing.bounds));
+            }
+            // Two different cells landed here, so push them both down a level
+            return insert(insert(Branch.EMPTY, existing, shift), leaf, shift);
+        }
+        Branch branch = (Branch) node;
+        int bit = 1 << (int) ((leaf.hash >>> shift) & MASK);
+        int index = Integer.bitCount(branch.bitmap & (bit - 1));
+        if ((branch.bitmap & bit) == 0) {
+            Object[] children = new Object[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Branch(branch.bitmap | bit, children);
+        }
+        Object[] children = branch.children.clone();
+        children[index] = insert(children[index], leaf, shift + BITS);
+        return new Branch(branch.bitmap, children);
+    }
+
+    private static @Nullable Bounds find(@Nullable Object node, long cell, long hash) {
+        int shift = 0;
+        while (node != null) {
+            if (node instanceof Leaf leaf) {
+                return leaf.cell == cell ? leaf.bounds : null;
+            }
+            Branch branch = (Branch) node;
+            int bit = 1 << (int) ((hash >>> shift) & MASK);
+            if ((branch.bitmap & bit) == 0) {
+                return null;
+            }
+            node = branch.children[Integer.bitCount(branch.bitmap & (bit - 1))];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    /**
+     * @return A new index with everything in this one, plus the given bounds.
+     */
+    @Contract("_->new")
+    public PersistentBoundsIndex with(BlockBounds bounds) {
+        Object[] newRoot = new Object[]{root};
+        BoundsIndex.forEachCell(bounds, cell -> newRoot[0] = insert(newRoot[0], new Leaf(cell, hash(cell), new Bounds(bounds, null)), 0));
+        return new PersistentBoundsIndex(newRoot[0]);
+    }
+
+    public boolean intersectsAny(BlockBounds bounds) {
+        if (root == null) return false;
+        BlockPos min = bounds.min();
+        BlockPos max = bounds.max();
+        for (int x = min.getX() >> BoundsIndex.CELL_SHIFT; x <= max.getX() >> BoundsIndex.CELL_SHIFT; x++) {
+            for (int y = min.getY() >> BoundsIndex.CELL_SHIFT; y <= max.getY() >> BoundsIndex.CELL_SHIFT; y++) {
+                for (int z = min.getZ() >> BoundsIndex.CELL_SHIFT; z <= max.getZ() >> BoundsIndex.CELL_SHIFT; z++) {
+                    long cell = BlockPos.asLong(x, y, z);
+                    for (@Nullable Bounds node = find(root, cell, hash(cell)); node != null; node = node.tail) {
+                        if (node.head.intersects(bounds)) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private record Branch(int bitmap, Object[] children) {
+        private static final Branch EMPTY = new Branch(0, new Object[0]);
+    }
+
+    private record Leaf(long cell, long hash, Bounds bounds) {
+    }
+
+    /**
+     * An immutable linked list of bounds
+     */
+    private record Bounds(BlockBounds head, @Nullable Bounds tail) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.skycatdev.descent.map;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.jetbrains.annotations.Nullable;
+import xyz.nucleoid.map_templates.MapTransform;
+
+/**
+ * Which piece is placed where - the template's id, where its origin ends up, and which way its axes point.
+ * Two pieces with the same key have the same bounds and openings, so this is all that's needed to tell placements apart.
+ * Keys are interned, so the same placement is always the same object, and the hash is only calculated once.
+ */
+public final class PlacementKey {
+    private static final Interner<PlacementKey> INTERNER = Interners.newWeakInterner();
+    private final Identifier id;
+    /**
+     * The transformed origin. Kept as ints rather than packed into a long, since packing wraps far from the origin.
+     */
+    private final int x;
+    private final int y;
+    private final int z;
+    /**
+     * The transformed x, y and z axes, as {@link Direction} ids, 3 bits each
+     */
+    private final int orientation;
+    private final int hash;
+
+    private PlacementKey(Identifier id, int x, int y, int z, int orientation) {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.orientation = orientation;
+        this.hash = 31 * id.hashCode() + HashCommon.long2int(HashCommon.mix(((long) x << 32 | y & 0xFFFFFFFFL) ^ HashCommon.mix((long) z << 9 | orientation)));
+    }
+
+    public static PlacementKey of(Identifier id, MapTransform transform) {
+        BlockPos origin = transform.transformedPoint(BlockPos.ORIGIN);
+        int orientation = axis(transform, origin, new BlockPos(1, 0, 0))
+                          | axis(transform, origin, new BlockPos(0, 1, 0)) << 3
+                          | axis(transform, origin, new BlockPos(0, 0, 1)) << 6;
+        return INTERNER.intern(new PlacementKey(id, origin.getX(), origin.getY(), origin.getZ(), orientation));
+    }
+
+    private static int axis(MapTransform transform, BlockPos origin, BlockPos unit) {
+        @Nullable Direction direction = Direction.fromVector(transform.transformedPoint(unit).subtract(origin), null);
+        if (direction == null) {
+            throw new IllegalArgumentException("Transform does not keep the axes lined up with the grid");
+        }
+        return direction.getId();
+    }
+
+    /**
+     * @return The key for this placement after moving it. Translations don't change the orientation.
+     */
+    public PlacementKey translated(int x, int y, int z) {
+        return INTERNER.intern(new PlacementKey(id, this.x + x, this.y + y, this.z + z, orientation));
+    }
+
+    public Identifier id() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PlacementKey that)) return false;
+        return hash == that.hash && x == that.x && y == that.y && z == that.z && orientation == that.orientation && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "PlacementKey{" +
+               "id=" + id +
+               ", offset=" + new BlockPos(x, y, z) +
+               ", orientation=" + Integer.toOctalString(orientation) +
+               '}';
+    }
+}
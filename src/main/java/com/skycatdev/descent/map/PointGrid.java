@@ -0,0 +1,219 @@
+package com.skycatdev.descent.map;
+
+import java.util.function.IntPredicate;
+
+/**
+ * A uniform grid over points, like {@link BoundsIndex} but for points that aren't on the block grid. Points are stored
+ * by index, so finding the ones in a sphere only looks at nearby cells. It only covers the bounds of the points it was
+ * made with, and everything is in flat arrays, so even looking through a huge sphere is cheap.
+ * Safe to read from multiple threads.
+ */
+public class PointGrid {
+    /**
+     * x, y, z of each point
+     */
+    private final double[] points;
+    private final double cellSize;
+    private final double originX, originY, originZ;
+    private final int sizeX, sizeY, sizeZ;
+    /**
+     * The points in cell i are {@code entries[cellStarts[i]]} up to {@code entries[cellStarts[i + 1]]}
+     */
+    private final int[] cellStarts;
+    private final int[] entries;
+
+    /**
+     * @param points   x, y, z of each point
+     * @param indices  Which points to put in the grid
+     * @param cellSize How wide each cell is. About the distance between neighboring points works well.
+     */
+    public PointGrid(double[] points, int[] indices, double cellSize) {
+        this.points = points;
+        double minX, minY, minZ;
+        minX = minY = minZ = Double.MAX_VALUE;
+        double maxX, maxY, maxZ;
+        maxX = maxY = maxZ = -Double.MAX_VALUE;
+        for (int index : indices) {
+            minX = Math.min(minX, points[index * 3]);
+            maxX = Math.max(maxX, points[index * 3]);
+            minY = Math.min(minY, points[index * 3 + 1]);
+            maxY = Math.max(maxY, points[index * 3 + 1]);
+            minZ = Math.min(minZ, points[index * 3 + 2]);
+            maxZ = Math.max(maxZ, points[index * 3 + 2]);
+        }
+        if (indices.length == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+        }
+        // Don't make more cells than there are points (times a few), even if the cells asked for are tiny
+        double volume = (maxX - minX) * (maxY - minY) * (maxZ - minZ);
+        cellSize = Math.max(cellSize, Math.cbrt(volume / (4.0 * Math.max(1, indices.length))));
+        this.cellSize = Math.max(cellSize, Double.MIN_NORMAL);
+        this.originX = minX;
+        this.originY = minY;
+        this.originZ = minZ;
+        sizeX = (int) ((maxX - minX) / this.cellSize) + 1;
+        sizeY = (int) ((maxY - minY) / this.cellSize) + 1;
+        sizeZ = (int) ((maxZ - minZ) / this.cellSize) + 1;
+
+        // Count how many go in each cell, then put them where the counts say
+        cellStarts = new int[sizeX * sizeY * sizeZ + 1];
+        int[] cellOf = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            int point = indices[i] * 3;
+            cellOf[i] = cell(cell(points[point], originX, sizeX), cell(points[point + 1], originY, sizeY), cell(points[point + 2], originZ, sizeZ));
+            cellStarts[cellOf[i] + 1]++;
+        }
+        for (int i = 1; i < cellStarts.length; i++) {
+            cellStarts[i] += cellStarts[i - 1];
+        }
+        entries = new int[indices.length];
+        int[] filled = new int[cellStarts.length - 1];
+        for (int i = 0; i < indices.length; i++) {
+            entries[cellStarts[cellOf[i]] + filled[cellOf[i]]++] = indices[i];
+        }
+    }
+
+    /**
+     * @return A cell size that puts about {@code perCell} of the points in each cell, if they're spread out evenly
+     */
+    public static double cellSizeFor(double[] points, int count, double perCell) {
+        double minX, minY, minZ;
+        minX = minY = minZ = Double.MAX_VALUE;
+        double maxX, maxY, maxZ;
+        maxX = maxY = maxZ = -Double.MAX_VALUE;
+        for (int i = 0; i < count * 3; i += 3) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+            minZ = Math.min(minZ, points[i + 2]);
+            maxZ = Math.max(maxZ, points[i + 2]);
+        }
+        // Flat layouts would have no volume, so give every side some size
+        double volume = Math.max(1, maxX - minX) * Math.max(1, maxY - minY) * Math.max(1, maxZ - minZ);
+        return Math.max(1, Math.cbrt(volume * perCell / Math.max(1, count)));
+    }
+
+    /**
+     * @return Which cell the coordinate is in along one axis, clamped to the grid
+     */
+    private int cell(double coordinate, double origin, int size) {
+        double cell = Math.floor((coordinate - origin) / cellSize);
+        return (int) Math.max(0, Math.min(size - 1, cell));
+    }
+
+    private int cell(int x, int y, int z) {
+        return (x * sizeY + y) * sizeZ + z;
+    }
+
+    /**
+     * Looks at the cell in the middle first, since that's the most likely place to find what's being looked for.
+     * @param test Called for points in or near the sphere, until it returns true
+     * @return Whether {@code test} returned true for any point
+     */
+    public boolean anyInSphere(double x, double y, double z, double radius, IntPredicate test) {
+        if (x + radius < originX || y + radius < originY || z + radius < originZ
+            || x - radius > originX + sizeX * cellSize || y - radius > originY + sizeY * cellSize || z - radius > originZ + sizeZ * cellSize) {
+            return false;
+        }
+        int middle = cell(cell(x, originX, sizeX), cell(y, originY, sizeY), cell(z, originZ, sizeZ));
+        if (anyInCell(middle, test)) return true;
+
+        double radiusSquared = radius * radius;
+        int endX = cell(x + radius, originX, sizeX);
+        for (int cellX = cell(x - radius, originX, sizeX); cellX <= endX; cellX++) {
+            double leftX = radiusSquared - squaredDistance(x, originX + cellX * cellSize);
+            if (leftX < 0) continue;
+            // Only the part of the sphere in this slice
+            double reachY = Math.sqrt(leftX);
+            int endY = cell(y + reachY, originY, sizeY);
+            for (int cellY = cell(y - reachY, originY, sizeY); cellY <= endY; cellY++) {
+                double leftY = leftX - squaredDistance(y, originY + cellY * cellSize);
+                if (leftY < 0) continue;
+                double reachZ = Math.sqrt(leftY);
+                int endZ = cell(z + reachZ, originZ, sizeZ);
+                for (int cellZ = cell(z - reachZ, originZ, sizeZ); cellZ <= endZ; cellZ++) {
+                    int cell = cell(cellX, cellY, cellZ);
+                    if (cell != middle && anyInCell(cell, test)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the closest points that pass the test, by looking through shells of cells around the point until nothing
+     * closer could be left.
+     * @param k     How many to find at most
+     * @param found Gets the points, closest first. Ties go to the smaller index.
+     * @return How many were found
+     */
+    public int nearest(double x, double y, double z, int k, IntPredicate test, int[] found) {
+        return nearest(x, y, z, k, Double.POSITIVE_INFINITY, test, found);
+    }
+
+    /**
+     * Like {@link #nearest(double, double, double, int, IntPredicate, int[])}, but stops looking past a distance, so it
+     * doesn't search the whole grid when there's nothing close enough to want.
+     * @param maxSquaredDistance Points farther than this (squared) are skipped. Points exactly this far are still
+     *                           found, so ties come out the same as without a limit.
+     */
+    public int nearest(double x, double y, double z, int k, double maxSquaredDistance, IntPredicate test, int[] found) {
+        double[] distances = new double[k];
+        int count = 0;
+        int centerX = cell(x, originX, sizeX), centerY = cell(y, originY, sizeY), centerZ = cell(z, originZ, sizeZ);
+        int maxRing = Math.max(sizeX, Math.max(sizeY, sizeZ));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Only the cells on the outside of this ring
+            for (int cellX = Math.max(0, centerX - ring); cellX <= Math.min(sizeX - 1, centerX + ring); cellX++) {
+                for (int cellY = Math.max(0, centerY - ring); cellY <= Math.min(sizeY - 1, centerY + ring); cellY++) {
+                    boolean side = Math.abs(cellX - centerX) == ring || Math.abs(cellY - centerY) == ring;
+                    int step = side ? 1 : Math.max(1, 2 * ring);
+                    for (int cellZ = centerZ - ring; cellZ <= centerZ + ring; cellZ += step) {
+                        if (cellZ < 0 || cellZ >= sizeZ) continue;
+                        int cell = cell(cellX, cellY, cellZ);
+                        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                            int point = entries[i];
+                            double dx = points[point * 3] - x, dy = points[point * 3 + 1] - y, dz = points[point * 3 + 2] - z;
+                            double distance = dx * dx + dy * dy + dz * dz;
+                            if (distance > maxSquaredDistance || !test.test(point)) continue;
+                            // Insert in order, dropping the farthest if it's full
+                            int slot = count < k ? count++ : k;
+                            while (slot > 0 && (distances[slot - 1] > distance || distances[slot - 1] == distance && found[slot - 1] > point)) {
+                                if (slot < k) {
+                                    distances[slot] = distances[slot - 1];
+                                    found[slot] = found[slot - 1];
+                                }
+                                slot--;
+                            }
+                            if (slot < k) {
+                                distances[slot] = distance;
+                                found[slot] = point;
+                            }
+                        }
+                    }
+                }
+            }
+            // Every cell past this ring is at least this far away
+            double reach = ring * cellSize;
+            if (count == k && distances[k - 1] < reach * reach || reach * reach > maxSquaredDistance) break;
+        }
+        return count;
+    }
+
+    /**
+     * @param from The least side of a cell
+     * @return The squared distance from the coordinate to the closest part of the cell, along one axis
+     */
+    private double squaredDistance(double coordinate, double from) {
+        double distance = Math.max(0, Math.max(from - coordinate, coordinate - (from + cellSize)));
+        return distance * distance;
+    }
+
+    private boolean anyInCell(int cell, IntPredicate test) {
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            if (test.test(entries[i])) return true;
+        }
+        return false;
+    }
+}
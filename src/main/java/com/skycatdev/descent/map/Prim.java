@@ -44,4 +44,144 @@ public class Prim {
 
         return results;
     }
+
+    /**
+     * Grows the tree one vertex at a time, always taking the shortest edge out of it. An indexed heap keeps the best edge
+     * to each vertex that isn't in the tree yet, so this is O(E log V). Ties go to whichever edge is first in the list.
+     * @param vertexCount How many rooms there are. Rooms are numbered from 0.
+     * @param start       The room to grow the tree from
+     * @return The edges of the minimum spanning tree of the rooms reachable from start, in the order they were added
+     * @see SpanningTree#minimum
+     */
+    public static List<RoomEdge> minimumSpanningTree(List<RoomEdge> edges, int vertexCount, int start) {
+        // Each vertex's edges, by their index in edges
+        int[] starts = new int[vertexCount + 1];
+        for (RoomEdge edge : edges) {
+            starts[edge.u() + 1]++;
+            starts[edge.v() + 1]++;
+        }
+        for (int i = 1; i <= vertexCount; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] incident = new int[starts[vertexCount]];
+        int[] filled = new int[vertexCount];
+        double[] lengths = new double[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            RoomEdge edge = edges.get(i);
+            lengths[i] = edge.length();
+            incident[starts[edge.u()] + filled[edge.u()]++] = i;
+            incident[starts[edge.v()] + filled[edge.v()]++] = i;
+        }
+
+        EdgeHeap open = new EdgeHeap(vertexCount, lengths);
+        boolean[] closed = new boolean[vertexCount];
+        List<RoomEdge> results = new ArrayList<>();
+        int vertex = start;
+        while (true) {
+            closed[vertex] = true;
+            for (int i = starts[vertex]; i < starts[vertex + 1]; i++) {
+                RoomEdge edge = edges.get(incident[i]);
+                int other = edge.u() == vertex ? edge.v() : edge.u();
+                if (!closed[other]) {
+                    open.offer(other, incident[i]);
+                }
+            }
+            if (open.isEmpty()) break;
+            int edge = open.peekEdge();
+            vertex = open.poll();
+            results.add(edges.get(edge));
+        }
+        return results;
+    }
+
+    /**
+     * An {@link IndexedHeap} over ints, so nothing needs boxing. Each vertex is in it at most once, with the shortest
+     * edge to it seen so far. Edges are compared by length, then by index.
+     */
+    private static class EdgeHeap {
+        private final double[] lengths;
+        /**
+         * The vertices, as a binary heap
+         */
+        private final int[] heap;
+        /**
+         * Where each vertex is in the heap, or -1
+         */
+        private final int[] positions;
+        /**
+         * The best edge to each vertex
+         */
+        private final int[] best;
+        private int size = 0;
+
+        EdgeHeap(int vertexCount, double[] lengths) {
+            this.lengths = lengths;
+            heap = new int[vertexCount];
+            positions = new int[vertexCount];
+            Arrays.fill(positions, -1);
+            best = new int[vertexCount];
+        }
+
+        void offer(int vertex, int edge) {
+            int position = positions[vertex];
+            if (position == -1) {
+                position = size++;
+            } else if (!less(edge, best[vertex])) {
+                return;
+            }
+            best[vertex] = edge;
+            siftUp(vertex, position);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int peekEdge() {
+            return best[heap[0]];
+        }
+
+        int poll() {
+            int top = heap[0];
+            positions[top] = -1;
+            int last = heap[--size];
+            if (size > 0) {
+                siftDown(last, 0);
+            }
+            return top;
+        }
+
+        private boolean less(int edge, int than) {
+            return lengths[edge] < lengths[than] || lengths[edge] == lengths[than] && edge < than;
+        }
+
+        private void siftUp(int vertex, int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!less(best[vertex], best[heap[parent]])) break;
+                place(heap[parent], position);
+                position = parent;
+            }
+            place(vertex, position);
+        }
+
+        private void siftDown(int vertex, int position) {
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) break;
+                if (child + 1 < size && less(best[heap[child + 1]], best[heap[child]])) {
+                    child++;
+                }
+                if (!less(best[heap[child]], best[vertex])) break;
+                place(heap[child], position);
+                position = child;
+            }
+            place(vertex, position);
+        }
+
+        private void place(int vertex, int position) {
+            heap[position] = vertex;
+            positions[vertex] = position;
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Room graphs that are cheaper to build than the Delaunay triangulation, for when there are lots of rooms. Everything is
+ * found through a {@link PointGrid}: each room's nearest neighbors are the candidate edges, and the Gabriel and relative
+ * neighborhood graphs then drop candidates that have another room too close to both ends. Since candidates only come
+ * from the nearest neighbors, those two are a subset of the real thing, and none of them are always connected on their
+ * own, so the closest edges between any separate pieces are added back at the end.
+ * @see RoomGraph
+ */
+public class ProximityGraphs {
+    /**
+     * The relative neighborhood graph's lune is inside a sphere around the middle of the edge this much bigger than the
+     * Gabriel one
+     */
+    private static final double LUNE_REACH = Math.sqrt(3);
+
+    /**
+     * @param points    x, y, z of each room's center, all different
+     * @param neighbors How many neighbors each room gets edges to
+     */
+    public static List<RoomEdge> nearestNeighbors(double[] points, int neighbors) {
+        PointGrid grid = grid(points);
+        LongOpenHashSet edges = candidates(points, grid, neighbors);
+        connect(points, grid, edges);
+        return Delaunay3D.sorted(points, edges);
+    }
+
+    /**
+     * Keeps edges where no other room is in the sphere that has the edge as its diameter.
+     * @param neighbors How many neighbors of each room to try
+     */
+    public static List<RoomEdge> gabriel(double[] points, int neighbors) {
+        return filtered(points, neighbors, 1);
+    }
+
+    /**
+     * Keeps edges where no other room is closer to both ends than they are to each other.
+     * @param neighbors How many neighbors of each room to try
+     */
+    public static List<RoomEdge> relativeNeighborhood(double[] points, int neighbors) {
+        return filtered(points, neighbors, LUNE_REACH);
+    }
+
+    /**
+     * @param reach How big the sphere to look for rooms in is, compared to the Gabriel one
+     */
+    private static List<RoomEdge> filtered(double[] points, int neighbors, double reach) {
+        PointGrid grid = grid(points);
+        LongOpenHashSet kept = new LongOpenHashSet();
+        boolean gabriel = reach == 1;
+        for (LongIterator iterator = candidates(points, grid, neighbors).iterator(); iterator.hasNext(); ) {
+            long key = iterator.nextLong();
+            int u = RoomEdge.uOf(key), v = RoomEdge.vOf(key);
+            double ux = points[u * 3], uy = points[u * 3 + 1], uz = points[u * 3 + 2];
+            double vx = points[v * 3], vy = points[v * 3 + 1], vz = points[v * 3 + 2];
+            double x = (ux + vx) / 2, y = (uy + vy) / 2, z = (uz + vz) / 2;
+            double lengthSquared = squaredDistance(ux, uy, uz, vx, vy, vz);
+            boolean blocked = grid.anyInSphere(x, y, z, Math.sqrt(lengthSquared) / 2 * reach, w -> {
+                if (w == u || w == v) return false;
+                double wx = points[w * 3], wy = points[w * 3 + 1], wz = points[w * 3 + 2];
+                if (gabriel) {
+                    return squaredDistance(wx, wy, wz, x, y, z) < lengthSquared / 4;
+                }
+                return squaredDistance(wx, wy, wz, ux, uy, uz) < lengthSquared && squaredDistance(wx, wy, wz, vx, vy, vz) < lengthSquared;
+            });
+            if (!blocked) {
+                kept.add(key);
+            }
+        }
+        connect(points, grid, kept);
+        return Delaunay3D.sorted(points, kept);
+    }
+
+    private static PointGrid grid(double[] points) {
+        int count = points.length / 3;
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++) {
+            all[i] = i;
+        }
+        return new PointGrid(points, all, PointGrid.cellSizeFor(points, count, 2));
+    }
+
+    /**
+     * @return Edges from each room to its nearest neighbors, as {@link RoomEdge#key}s
+     */
+    private static LongOpenHashSet candidates(double[] points, PointGrid grid, int neighbors) {
+        int count = points.length / 3;
+        LongOpenHashSet edges = new LongOpenHashSet(count * neighbors);
+        int[] found = new int[neighbors];
+        for (int u = 0; u < count; u++) {
+            int self = u;
+            int foundCount = grid.nearest(points[u * 3], points[u * 3 + 1], points[u * 3 + 2], neighbors, w -> w != self, found);
+            for (int i = 0; i < foundCount; i++) {
+                edges.add(RoomEdge.key(u, found[i]));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Joins separate pieces of the graph, by adding the shortest edge out of each piece until there's only one (like
+     * Boruvka's algorithm). The shortest edge out of a piece is always in the minimum spanning tree, so this doesn't
+     * change what the tree could have been. The biggest piece is skipped, since finding its way out would search the
+     * most, and every other piece joins something anyway. Each search only goes as far as the shortest edge its piece
+     * already has, so a piece's other rooms only look nearby instead of across the whole map.
+     */
+    private static void connect(double[] points, PointGrid grid, LongOpenHashSet edges) {
+        int count = points.length / 3;
+        UnionFind pieces = new UnionFind(count);
+        int pieceCount = count;
+        for (LongIterator iterator = edges.iterator(); iterator.hasNext(); ) {
+            long key = iterator.nextLong();
+            if (pieces.union(RoomEdge.uOf(key), RoomEdge.vOf(key))) {
+                pieceCount--;
+            }
+        }
+
+        int[] found = new int[1];
+        int[] sizes = new int[count];
+        double[] shortestLengths = new double[count];
+        long[] shortest = new long[count];
+        while (pieceCount > 1) {
+            Arrays.fill(sizes, 0);
+            int biggest = 0;
+            for (int u = 0; u < count; u++) {
+                int root = pieces.find(u);
+                if (++sizes[root] > sizes[biggest]) {
+                    biggest = root;
+                }
+            }
+
+            Arrays.fill(shortestLengths, Double.POSITIVE_INFINITY);
+            for (int u = 0; u < count; u++) {
+                int root = pieces.find(u);
+                if (root == biggest || grid.nearest(points[u * 3], points[u * 3 + 1], points[u * 3 + 2], 1, shortestLengths[root], w -> pieces.find(w) != root, found) == 0) {
+                    continue;
+                }
+                int v = found[0];
+                long key = RoomEdge.key(u, v);
+                double length = squaredDistance(points[u * 3], points[u * 3 + 1], points[u * 3 + 2], points[v * 3], points[v * 3 + 1], points[v * 3 + 2]);
+                if (length < shortestLengths[root] || length == shortestLengths[root] && key < shortest[root]) {
+                    shortestLengths[root] = length;
+                    shortest[root] = key;
+                }
+            }
+
+            for (int root = 0; root < count; root++) {
+                if (shortestLengths[root] == Double.POSITIVE_INFINITY) continue;
+                long key = shortest[root];
+                edges.add(key);
+                if (pieces.union(RoomEdge.uOf(key), RoomEdge.vOf(key))) {
+                    pieceCount--;
+                }
+            }
+        }
+    }
+
+    private static double squaredDistance(double ax, double ay, double az, double bx, double by, double bz) {
+        double dx = ax - bx, dy = ay - by, dz = az - bz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
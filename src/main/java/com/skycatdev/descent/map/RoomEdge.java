@@ -0,0 +1,69 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * An edge between two rooms, by their indices. The smaller index is always first, so the same edge is always equal.
+ * @param length The distance between the rooms' centers
+ */
+public record RoomEdge(int u, int v, double length) {
+    public RoomEdge {
+        if (u > v) {
+            int temp = u;
+            u = v;
+            v = temp;
+        }
+    }
+
+    /**
+     * @return The edge packed into one long, so sets of edges don't need objects. The smaller index is in the high bits,
+     * so sorting keys sorts by u, then v.
+     */
+    public static long key(int u, int v) {
+        return u < v ? (long) u << 32 | v : (long) v << 32 | u;
+    }
+
+    public long key() {
+        return key(u, v);
+    }
+
+    public static int uOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int vOf(long key) {
+        return (int) key;
+    }
+
+    /**
+     * @param points x, y, z of each room's center
+     * @param key    From {@link #key(int, int)}
+     */
+    public static RoomEdge between(double[] points, long key) {
+        return between(points, uOf(key), vOf(key));
+    }
+
+    /**
+     * @param points x, y, z of each room's center
+     */
+    public static RoomEdge between(double[] points, int u, int v) {
+        double dx = points[u * 3] - points[v * 3];
+        double dy = points[u * 3 + 1] - points[v * 3 + 1];
+        double dz = points[u * 3 + 2] - points[v * 3 + 2];
+        return new RoomEdge(u, v, Math.sqrt(dx * dx + dy * dy + dz * dz));
+    }
+
+    /**
+     * @param points x, y, z of each room's center
+     * @return This edge between the actual points, for dumping
+     */
+    public Edge toEdge(double[] points) {
+        return new Edge(new Vec3d(points[u * 3], points[u * 3 + 1], points[u * 3 + 2]),
+                new Vec3d(points[v * 3], points[v * 3 + 1], points[v * 3 + 2]),
+                length);
+    }
+
+    public boolean has(int vertex) {
+        return u == vertex || v == vertex;
+    }
+}
@@ -0,0 +1,56 @@
+package com.skycatdev.descent.map;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+
+import java.util.List;
+
+/**
+ * Which edges between rooms the generator picks its corridors from. The minimum spanning tree is always part of it, and
+ * the rest are only used for the occasional extra corridor, so the sparser graphs give almost the same dungeons for much
+ * less work when there are thousands of rooms.
+ */
+public enum RoomGraph implements StringIdentifiable {
+    /**
+     * Every edge of the Delaunay triangulation
+     */
+    DELAUNAY("delaunay"),
+    /**
+     * @see ProximityGraphs#gabriel
+     */
+    GABRIEL("gabriel"),
+    /**
+     * @see ProximityGraphs#relativeNeighborhood
+     */
+    RELATIVE_NEIGHBORHOOD("relative_neighborhood"),
+    /**
+     * @see ProximityGraphs#nearestNeighbors
+     */
+    NEAREST_NEIGHBORS("nearest_neighbors");
+
+    public static final Codec<RoomGraph> CODEC = StringIdentifiable.createCodec(RoomGraph::values);
+    private final String name;
+
+    RoomGraph(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param points    x, y, z of each room's center, all different
+     * @param neighbors How many of each room's nearest neighbors to use, if it isn't {@link #DELAUNAY}
+     * @return The edges between rooms, sorted by u then v. Always connected.
+     */
+    public List<RoomEdge> build(double[] points, int neighbors) {
+        return switch (this) {
+            case DELAUNAY -> Delaunay3D.triangulate(points);
+            case GABRIEL -> ProximityGraphs.gabriel(points, neighbors);
+            case RELATIVE_NEIGHBORHOOD -> ProximityGraphs.relativeNeighborhood(points, neighbors);
+            case NEAREST_NEIGHBORS -> ProximityGraphs.nearestNeighbors(points, neighbors);
+        };
+    }
+
+    @Override
+    public String asString() {
+        return name;
+    }
+}
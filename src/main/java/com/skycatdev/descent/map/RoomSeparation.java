@@ -0,0 +1,40 @@
+package com.skycatdev.descent.map;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+import net.minecraft.util.math.random.Random;
+
+/**
+ * How rooms that are too close get moved apart.
+ */
+public enum RoomSeparation implements StringIdentifiable {
+    /**
+     * Randomly jitter rooms that are too close, one at a time
+     * @see RoomSeparator#separate
+     */
+    JITTER("jitter"),
+    /**
+     * Push every room that's too close out of the way at once. Doesn't use the random, and takes far fewer passes.
+     * @see RoomSeparator#push
+     */
+    FORCE("force");
+
+    public static final Codec<RoomSeparation> CODEC = StringIdentifiable.createCodec(RoomSeparation::values);
+    private final String name;
+
+    RoomSeparation(String name) {
+        this.name = name;
+    }
+
+    public void separate(RoomSeparator separator, Random random) throws NoSolutionException {
+        switch (this) {
+            case JITTER -> separator.separate(random);
+            case FORCE -> separator.push();
+        }
+    }
+
+    @Override
+    public String asString() {
+        return name;
+    }
+}
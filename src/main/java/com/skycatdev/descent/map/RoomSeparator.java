@@ -0,0 +1,412 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import com.skycatdev.descent.utils.Utils;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.util.math.random.Random;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves rooms apart until none of them are closer than the minimum separation, either by jittering them
+ * ({@link #separate}) or pushing them off of each other ({@link #push}). Finding what's too close goes through a spatial
+ * hash, so a pass only looks at rooms that are nearby instead of every pair.
+ * <p>
+ * Bounds are kept in int arrays, with the max side pushed out by the separation. Two rooms are too close exactly when
+ * those bounds overlap, since inflating one side of both is the same as inflating all of one of them.
+ * Each room is hashed by the cell its min corner is in, with cells at least as big as the biggest inflated room, so
+ * anything that could overlap a room is in one of the few cells around it.
+ */
+public class RoomSeparator {
+    /**
+     * How many passes to try before giving up. Each one is about linear in the number of rooms.
+     */
+    public static final int MAX_PASSES = 10_000;
+    /**
+     * How many rooms each task works out pushes for. This doesn't depend on the number of threads, but the pushes
+     * don't depend on each other anyway.
+     */
+    private static final int CHUNK_SIZE = 256;
+    private static final ForkJoinPool SEPARATION_POOL = new ForkJoinPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Descent Separator #" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (thread, e) -> Descent.LOGGER.error("Uncaught exception in {}", thread.getName(), e),
+            false);
+    private static final AtomicLong SEPARATIONS = new AtomicLong();
+    private static final AtomicLong PASSES = new AtomicLong();
+    private static final AtomicLong MOVES = new AtomicLong();
+    private final int count;
+    /**
+     * min x, y, z, then inflated max x, y, z of each room, where it is now
+     */
+    private final int[] bounds;
+    private final int separationX;
+    private final int separationY;
+    private final int separationZ;
+    /**
+     * x, y, z of how far each room has been moved
+     */
+    private final int[] offsets;
+    /**
+     * Cells are 2^shift blocks on each side
+     */
+    private final int shift;
+    /**
+     * The first room in each cell. The rest are linked through {@link #next} and {@link #previous}.
+     */
+    private final Long2IntOpenHashMap heads;
+    private final int[] next;
+    private final int[] previous;
+    private final long[] cellOf;
+    private int passes = 0;
+    private int moves = 0;
+
+    /**
+     * @param bounds min x, y, z, then max x, y, z of each room, inclusive like {@link xyz.nucleoid.map_templates.BlockBounds}
+     */
+    public RoomSeparator(int[] bounds, int separationX, int separationY, int separationZ) {
+        if (separationX < 0 || separationY < 0 || separationZ < 0) {
+            throw new IllegalArgumentException("Separation must be >= 0");
+        }
+        this.count = bounds.length / 6;
+        this.bounds = bounds.clone();
+        this.separationX = separationX;
+        this.separationY = separationY;
+        this.separationZ = separationZ;
+        this.offsets = new int[count * 3];
+
+        int extent = 1;
+        for (int room = 0; room < count; room++) {
+            int at = room * 6;
+            this.bounds[at + 3] += separationX;
+            this.bounds[at + 4] += separationY;
+            this.bounds[at + 5] += separationZ;
+            for (int axis = 0; axis < 3; axis++) {
+                extent = Math.max(extent, this.bounds[at + 3 + axis] - this.bounds[at + axis]);
+            }
+        }
+        this.shift = 32 - Integer.numberOfLeadingZeros(extent);
+
+        this.heads = new Long2IntOpenHashMap(count);
+        heads.defaultReturnValue(-1);
+        this.next = new int[count];
+        this.previous = new int[count];
+        this.cellOf = new long[count];
+        for (int room = 0; room < count; room++) {
+            link(room);
+        }
+    }
+
+    /**
+     * @return How many times rooms have been separated, since the game started
+     */
+    public static long totalSeparations() {
+        return SEPARATIONS.get();
+    }
+
+    /**
+     * @return How many passes have been made over rooms, since the game started
+     */
+    public static long totalPasses() {
+        return PASSES.get();
+    }
+
+    /**
+     * @return How many times a room has been moved off of another, since the game started
+     */
+    public static long totalMoves() {
+        return MOVES.get();
+    }
+
+    /**
+     * Jitter rooms until none of them are too close. Rooms are moved in the same order, by the same amounts, as checking
+     * every pair would.
+     * @throws NoSolutionException If rooms are still too close after {@link #MAX_PASSES}, or if they're too close and
+     * there's no separation to move them by
+     */
+    public void separate(Random random) throws NoSolutionException {
+        int startMoves = moves;
+        int startPasses = passes;
+        try {
+            boolean keepSteering = true;
+            while (keepSteering) {
+                if (passes >= MAX_PASSES) {
+                    throw new NoSolutionException(String.format("%d rooms were still too close after %d passes", count, passes));
+                }
+                passes++;
+                keepSteering = false;
+                for (int room = 0; room < count; room++) {
+                    if (!overlapsAny(room)) continue;
+                    if (separationX == 0 && separationY == 0 && separationZ == 0) {
+                        throw new NoSolutionException("Rooms overlap, but there's no separation to move them by");
+                    }
+                    keepSteering = true;
+                    // TODO: Constants or random formula may need tweaking
+                    int x = random.nextBetween(-separationX * 3, separationX * 3);
+                    int y = random.nextBetween(-separationY * 3, separationY * 3);
+                    int z = random.nextBetween(-separationZ * 3, separationZ * 3);
+                    move(room, x, y, z);
+                }
+            }
+        } finally {
+            record(startPasses, startMoves);
+        }
+        Descent.LOGGER.debug("Separated {} rooms in {} passes, with {} moves", count, passes - startPasses, moves - startMoves);
+    }
+
+    /**
+     * Push rooms off of each other until none of them are too close. In each pass, every room that's too close to
+     * something works out how far to move from where everything is at the start of the pass, all at the same time, and
+     * then they all move. For each room it's too close to, a room moves out of it along whichever axis that takes the
+     * least, and it takes the biggest of those on each axis. Rooms only move on axes that have a separation.
+     * Nothing is random, and the moves don't depend on how many threads there are.
+     * @throws NoSolutionException If rooms are still too close after {@link #MAX_PASSES}, or if they're too close and
+     * there's no separation to move them by
+     */
+    public void push() throws NoSolutionException {
+        int startMoves = moves;
+        int startPasses = passes;
+        int[] pushes = new int[count * 3];
+        try {
+            if (separationX == 0 && separationY == 0 && separationZ == 0) {
+                passes++;
+                for (int room = 0; room < count; room++) {
+                    if (overlapsAny(room)) {
+                        throw new NoSolutionException("Rooms overlap, but there's no separation to move them by");
+                    }
+                }
+                return;
+            }
+            boolean keepPushing = true;
+            while (keepPushing) {
+                if (passes >= MAX_PASSES) {
+                    throw new NoSolutionException(String.format("%d rooms were still too close after %d passes", count, passes));
+                }
+                passes++;
+                findPushes(pushes);
+                keepPushing = false;
+                for (int room = 0; room < count; room++) {
+                    int at = room * 3;
+                    if (pushes[at] == 0 && pushes[at + 1] == 0 && pushes[at + 2] == 0) continue;
+                    keepPushing = true;
+                    move(room, pushes[at], pushes[at + 1], pushes[at + 2]);
+                }
+            }
+        } finally {
+            record(startPasses, startMoves);
+        }
+        Descent.LOGGER.debug("Pushed {} rooms apart in {} passes, with {} moves", count, passes - startPasses, moves - startMoves);
+    }
+
+    /**
+     * Work out how far every room should be pushed, in chunks on {@link #SEPARATION_POOL}.
+     */
+    private void findPushes(int[] pushes) {
+        if (count <= CHUNK_SIZE) {
+            findPushes(pushes, 0, count);
+        } else {
+            List<CompletableFuture<Void>> futures = new ArrayList<>((count + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(count, from + CHUNK_SIZE);
+                futures.add(CompletableFuture.runAsync(() -> findPushes(pushes, chunkFrom, chunkTo), SEPARATION_POOL));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    /**
+     * @param from The first room to find the push of
+     * @param to   The room after the last one
+     */
+    private void findPushes(int[] pushes, int from, int to) {
+        int reach = 1 << shift;
+        int[] separations = {separationX, separationY, separationZ};
+        for (int room = from; room < to; room++) {
+            int at = room * 6;
+            int minX = bounds[at], minY = bounds[at + 1], minZ = bounds[at + 2];
+            int maxX = bounds[at + 3], maxY = bounds[at + 4], maxZ = bounds[at + 5];
+            Vec3d push = Vec3d.ZERO;
+            for (int x = (minX - reach) >> shift; x <= maxX >> shift; x++) {
+                for (int y = (minY - reach) >> shift; y <= maxY >> shift; y++) {
+                    for (int z = (minZ - reach) >> shift; z <= maxZ >> shift; z++) {
+                        for (int other = heads.get(BlockPos.asLong(x, y, z)); other != -1; other = next[other]) {
+                            if (other == room) continue;
+                            int otherAt = other * 6;
+                            if (minX <= bounds[otherAt + 3] && bounds[otherAt] <= maxX &&
+                                minY <= bounds[otherAt + 4] && bounds[otherAt + 1] <= maxY &&
+                                minZ <= bounds[otherAt + 5] && bounds[otherAt + 2] <= maxZ) {
+                                push = Utils.maxComponentsByAbs(push, Vec3d.of(pushAway(room, other, separations)));
+                            }
+                        }
+                    }
+                }
+            }
+            pushes[room * 3] = (int) push.getX();
+            pushes[room * 3 + 1] = (int) push.getY();
+            pushes[room * 3 + 2] = (int) push.getZ();
+        }
+    }
+
+    /**
+     * @return How far to push the room so that it's out of other, along the axis where that's the shortest. The other
+     * room gets pushed just as far the other way. Pushing both half as far would be enough on its own, but in a crowd
+     * rooms get pushed back in from all sides, and that takes a lot more passes.
+     */
+    private Vec3i pushAway(int room, int other, int[] separations) {
+        int at = room * 6;
+        int otherAt = other * 6;
+        int axis = -1;
+        int depth = Integer.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            if (separations[i] == 0) continue;
+            int axisDepth = Math.min(bounds[at + 3 + i], bounds[otherAt + 3 + i]) - Math.max(bounds[at + i], bounds[otherAt + i]) + 1;
+            if (axisDepth < depth) {
+                axis = i;
+                depth = axisDepth;
+            }
+        }
+        if (axis == -1) {
+            return Vec3i.ZERO;
+        }
+        // Doubled centers, so they stay ints
+        int[] away = new int[3];
+        for (int i = 0; i < 3; i++) {
+            away[i] = bounds[at + i] + bounds[at + 3 + i] - bounds[otherAt + i] - bounds[otherAt + 3 + i];
+        }
+        if (away[axis] == 0) {
+            // Same center, so split them by index
+            away[axis] = room > other ? 1 : -1;
+        }
+        int[] magnitude = new int[3];
+        magnitude[axis] = depth;
+        return Utils.copySign(new Vec3i(magnitude[0], magnitude[1], magnitude[2]), new Vec3d(away[0], away[1], away[2]));
+    }
+
+    private void record(int startPasses, int startMoves) {
+        SEPARATIONS.incrementAndGet();
+        PASSES.addAndGet(passes - startPasses);
+        MOVES.addAndGet(moves - startMoves);
+    }
+
+    /**
+     * @return Whether the room is too close to any other room
+     */
+    public boolean overlapsAny(int room) {
+        int at = room * 6;
+        int reach = 1 << shift;
+        int minX = bounds[at], minY = bounds[at + 1], minZ = bounds[at + 2];
+        int maxX = bounds[at + 3], maxY = bounds[at + 4], maxZ = bounds[at + 5];
+        // Anything overlapping has its min corner between min - reach and max
+        for (int x = (minX - reach) >> shift; x <= maxX >> shift; x++) {
+            for (int y = (minY - reach) >> shift; y <= maxY >> shift; y++) {
+                for (int z = (minZ - reach) >> shift; z <= maxZ >> shift; z++) {
+                    for (int other = heads.get(BlockPos.asLong(x, y, z)); other != -1; other = next[other]) {
+                        if (other == room) continue;
+                        int otherAt = other * 6;
+                        if (minX <= bounds[otherAt + 3] && bounds[otherAt] <= maxX &&
+                            minY <= bounds[otherAt + 4] && bounds[otherAt + 1] <= maxY &&
+                            minZ <= bounds[otherAt + 5] && bounds[otherAt + 2] <= maxZ) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void move(int room, int x, int y, int z) {
+        moves++;
+        if (x == 0 && y == 0 && z == 0) return;
+        unlink(room);
+        int at = room * 6;
+        bounds[at] += x;
+        bounds[at + 1] += y;
+        bounds[at + 2] += z;
+        bounds[at + 3] += x;
+        bounds[at + 4] += y;
+        bounds[at + 5] += z;
+        offsets[room * 3] += x;
+        offsets[room * 3 + 1] += y;
+        offsets[room * 3 + 2] += z;
+        link(room);
+    }
+
+    private void link(int room) {
+        int at = room * 6;
+        long cell = BlockPos.asLong(bounds[at] >> shift, bounds[at + 1] >> shift, bounds[at + 2] >> shift);
+        int head = heads.put(cell, room);
+        cellOf[room] = cell;
+        next[room] = head;
+        previous[room] = -1;
+        if (head != -1) {
+            previous[head] = room;
+        }
+    }
+
+    private void unlink(int room) {
+        int before = previous[room];
+        int after = next[room];
+        if (after != -1) {
+            previous[after] = before;
+        }
+        if (before != -1) {
+            next[before] = after;
+        } else if (after != -1) {
+            heads.put(cellOf[room], after);
+        } else {
+            heads.remove(cellOf[room]);
+        }
+    }
+
+    public int roomCount() {
+        return count;
+    }
+
+    /**
+     * @return How many passes this has made
+     */
+    public int passes() {
+        return passes;
+    }
+
+    /**
+     * @return How many times this has moved a room
+     */
+    public int moves() {
+        return moves;
+    }
+
+    public int offsetX(int room) {
+        return offsets[room * 3];
+    }
+
+    public int offsetY(int room) {
+        return offsets[room * 3 + 1];
+    }
+
+    public int offsetZ(int room) {
+        return offsets[room * 3 + 2];
+    }
+
+    /**
+     * @return Whether the room has been moved anywhere
+     */
+    public boolean moved(int room) {
+        return offsets[room * 3] != 0 || offsets[room * 3 + 1] != 0 || offsets[room * 3 + 2] != 0;
+    }
+}
@@ -0,0 +1,14 @@
+package com.skycatdev.descent.map;
+
+/**
+ * The plain version of {@link InsphereBatch}, for when the Vector API isn't available.
+ */
+public class ScalarInsphereBatch extends InsphereBatch {
+    @Override
+    public void classify(double x, double y, double z, double[] centerX, double[] centerY, double[] centerZ, double[] radiiSquared, int from, int to, byte[] out) {
+        for (int i = from; i < to; i++) {
+            double dx = centerX[i] - x, dy = centerY[i] - y, dz = centerZ[i] - z;
+            out[i - from] = classify(dx * dx + dy * dy + dz * dz, radiiSquared[i]);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Points with the duplicates merged, so they can be triangulated. Each point is snapped to a grid of
+ * {@link #SNAP}-sized steps, and points that snap to the same spot become one vertex, found by hashing instead of
+ * comparing every pair. Different spots can hash the same, so vertices with the same hash are chained and their
+ * snapped coordinates compared, which lets the points be as spread out as they like. Each vertex is where the first of its points was, and remembers all of them.
+ * Room centers are always on the half-block grid, so only rooms with the same center get merged.
+ */
+public class SnappedPoints {
+    /**
+     * How far apart the snapping grid is, in blocks. A power of two, so snapping doesn't round.
+     */
+    public static final double SNAP = 1 / 16.0;
+    /**
+     * x, y, z of each vertex
+     */
+    private final double[] vertices;
+    /**
+     * Which vertex each point became
+     */
+    private final int[] vertexOf;
+    /**
+     * The points at vertex i are {@code pointsAt[starts[i]]} up to {@code pointsAt[starts[i + 1]]}, in order
+     */
+    private final int[] starts;
+    private final int[] pointsAt;
+
+    private SnappedPoints(double[] vertices, int[] vertexOf, int[] starts, int[] pointsAt) {
+        this.vertices = vertices;
+        this.vertexOf = vertexOf;
+        this.starts = starts;
+        this.pointsAt = pointsAt;
+    }
+
+    /**
+     * @param points x, y, z of each point
+     * @throws IllegalArgumentException If the points aren't finite, or are so spread out that they'd be outside any world
+     */
+    public static SnappedPoints of(double[] points) {
+        int count = points.length / 3;
+        double minX, minY, minZ;
+        minX = minY = minZ = Double.MAX_VALUE;
+        for (int i = 0; i < count * 3; i += 3) {
+            minX = Math.min(minX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            minZ = Math.min(minZ, points[i + 2]);
+        }
+
+        Long2IntOpenHashMap vertexAt = new Long2IntOpenHashMap(count);
+        vertexAt.defaultReturnValue(-1);
+        int[] vertexOf = new int[count];
+        double[] vertices = new double[count * 3];
+        int[] starts = new int[count + 1];
+        // Where each vertex snapped to, and the next vertex with the same hash
+        long[] snappedAt = new long[count * 3];
+        int[] nextWithKey = new int[count];
+        int vertexCount = 0;
+        for (int point = 0; point < count; point++) {
+            long x = snap(points[point * 3], minX), y = snap(points[point * 3 + 1], minY), z = snap(points[point * 3 + 2], minZ);
+            long key = (x * 0x9E3779B97F4A7C15L + y) * 0xC2B2AE3D27D4EB4FL + z;
+            int vertex = vertexAt.get(key);
+            while (vertex != -1 && (snappedAt[vertex * 3] != x || snappedAt[vertex * 3 + 1] != y || snappedAt[vertex * 3 + 2] != z)) {
+                vertex = nextWithKey[vertex];
+            }
+            if (vertex == -1) {
+                vertex = vertexCount++;
+                System.arraycopy(points, point * 3, vertices, vertex * 3, 3);
+                snappedAt[vertex * 3] = x;
+                snappedAt[vertex * 3 + 1] = y;
+                snappedAt[vertex * 3 + 2] = z;
+                nextWithKey[vertex] = vertexAt.put(key, vertex);
+            }
+            vertexOf[point] = vertex;
+            starts[vertex + 1]++;
+        }
+
+        // Group the points by vertex
+        for (int i = 1; i <= vertexCount; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] pointsAt = new int[count];
+        int[] filled = new int[vertexCount];
+        for (int point = 0; point < count; point++) {
+            int vertex = vertexOf[point];
+            pointsAt[starts[vertex] + filled[vertex]++] = point;
+        }
+        return new SnappedPoints(Arrays.copyOf(vertices, vertexCount * 3), vertexOf, Arrays.copyOf(starts, vertexCount + 1), pointsAt);
+    }
+
+    private static long snap(double coordinate, double min) {
+        double snapped = Math.floor((coordinate - min) / SNAP + 0.5);
+        // Past this, rounding to a long would clamp and merge points that aren't the same
+        if (!(snapped < 0x1p62)) {
+            throw new IllegalArgumentException("Points aren't finite, or are too spread out to snap");
+        }
+        return (long) snapped;
+    }
+
+    /**
+     * @return x, y, z of each vertex. Don't modify it.
+     */
+    public double[] vertices() {
+        return vertices;
+    }
+
+    public int vertexCount() {
+        return starts.length - 1;
+    }
+
+    public int vertexOf(int point) {
+        return vertexOf[point];
+    }
+
+    /**
+     * @return How many points were merged into the vertex
+     */
+    public int pointCount(int vertex) {
+        return starts[vertex + 1] - starts[vertex];
+    }
+
+    /**
+     * @param index Which of the vertex's points, in the order they were given
+     */
+    public int point(int vertex, int index) {
+        return pointsAt[starts[vertex] + index];
+    }
+
+    /**
+     * @return Whether any points were merged
+     */
+    public boolean hasDuplicates() {
+        return vertexCount() < vertexOf.length;
+    }
+}
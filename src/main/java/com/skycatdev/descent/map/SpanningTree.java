@@ -0,0 +1,29 @@
+package com.skycatdev.descent.map;
+
+import java.util.List;
+
+/**
+ * Picks between {@link Prim} and {@link Kruskal}, which find the same tree in the same order, so which one is used never
+ * changes the dungeon. They're close for the graphs the generator makes, but sorting every edge falls behind Prim's heap
+ * once each vertex has lots of edges.
+ */
+public class SpanningTree {
+    /**
+     * Past about this many edges per vertex, sorting every edge costs more than {@link Prim}'s heap. A 3D Delaunay
+     * triangulation has about 8.
+     */
+    public static final int DENSE_EDGES_PER_VERTEX = 16;
+
+    /**
+     * @param vertexCount How many rooms there are. Rooms are numbered from 0.
+     * @param start       The room to grow the tree from
+     * @return The edges of the minimum spanning tree of the rooms reachable from start, in the order {@link Prim} would
+     * add them
+     */
+    public static List<RoomEdge> minimum(List<RoomEdge> edges, int vertexCount, int start) {
+        if (edges.size() > (long) DENSE_EDGES_PER_VERTEX * vertexCount) {
+            return Prim.minimumSpanningTree(edges, vertexCount, start);
+        }
+        return Kruskal.minimumSpanningTree(edges, vertexCount, start);
+    }
+}
@@ -0,0 +1,457 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A Delaunay tetrahedralization that's built one vertex at a time (Bowyer-Watson), where every tetrahedron knows its
+ * neighbors. Inserting a vertex walks from the last tetrahedron made to the one containing the vertex, then grows the
+ * cavity of tetrahedra whose circumspheres contain the vertex by only looking at neighbors. Nothing ever looks at every
+ * tetrahedron, so each insert only costs about as much as the cavity it replaces.
+ * <p>
+ * Everything is stored in flat primitive arrays - vertices are indices into the points, and cells are indices into the
+ * cell arrays, four entries per cell. Dead cells are reused, so after warming up, inserting doesn't allocate.
+ * <p>
+ * All the geometry is decided by {@link GeometricPredicates}, so rounding can't make the walk and the cavity disagree,
+ * even when rooms line up exactly. Ties in the insphere test are broken symbolically, so the result is the one Delaunay
+ * tetrahedralization that the tie-breaking picks, whatever order the vertices come in. Each cell's circumsphere is also
+ * cached, so most insphere checks are just a distance check through {@link InsphereBatch}, and only the close calls
+ * need the real predicate.
+ */
+public class TetrahedralMesh {
+    /**
+     * Faces are keyed by packing their vertices into 21 bits each, so vertices have to be below this
+     */
+    public static final int MAX_VERTICES = 1 << 21;
+    private static final int NONE = -1;
+    /**
+     * Cells flatter than this (compared to a cube with the same edges) don't get a cached sphere, since rounding could
+     * move it too much
+     */
+    private static final double MIN_QUALITY = 1e-3;
+    /**
+     * x, y, z of every vertex that may be inserted, including the enclosing ones
+     */
+    private final double[] points;
+    /**
+     * The four vertices of each cell, always positively oriented ({@link GeometricPredicates#orient3d} > 0).
+     * The first is {@link #NONE} for dead cells.
+     */
+    private int[] cellVertices;
+    /**
+     * The neighbor across the face opposite each vertex, or {@link #NONE} on the outside of the mesh
+     */
+    private int[] neighbors;
+    /**
+     * The circumcenter of each cell, and its radius squared. The radius is NaN when it couldn't be found reliably.
+     */
+    private double[] sphereX, sphereY, sphereZ, sphereRadii;
+    /**
+     * Used to mark cells while searching, instead of a set
+     */
+    private int[] stamps;
+    private int stamp = 0;
+    /**
+     * How many cell slots have ever been used
+     */
+    private int cellSlots = 0;
+    private final IntArrayList freeCells = new IntArrayList();
+    /**
+     * Where to start walking from, usually the last cell made
+     */
+    private int last;
+    /**
+     * Every vertex in the mesh so far, for {@link #isDelaunay()}
+     */
+    private final IntArrayList inserted = new IntArrayList();
+    // Kept around so each insert doesn't need new ones
+    private final IntArrayList cavity = new IntArrayList();
+    private final IntArrayList toCheck = new IntArrayList();
+    private final IntArrayList created = new IntArrayList();
+    private final int[] batchCells = new int[4];
+    private final int[] batchFaces = new int[4];
+    private final byte[] batchResults = new byte[4];
+    /**
+     * How many cavity cells each face belongs to
+     */
+    private final Long2IntOpenHashMap faceCounts = new Long2IntOpenHashMap();
+    /**
+     * Faces of new cells that haven't been linked yet, to the new cell's index in created << 2 | the face
+     */
+    private final Long2IntOpenHashMap openFaces = new Long2IntOpenHashMap();
+
+    /**
+     * @param points x, y, z of every vertex that may be inserted
+     * @param a      The index of the first vertex of a tetrahedron that contains every vertex that will be inserted
+     */
+    public TetrahedralMesh(double[] points, int a, int b, int c, int d) {
+        this.points = points;
+        int capacity = 64;
+        cellVertices = new int[capacity * 4];
+        neighbors = new int[capacity * 4];
+        sphereX = new double[capacity];
+        sphereY = new double[capacity];
+        sphereZ = new double[capacity];
+        sphereRadii = new double[capacity];
+        stamps = new int[capacity];
+        openFaces.defaultReturnValue(NONE);
+
+        last = GeometricPredicates.orient3d(points, a, b, c, d) > 0 ? newCell(a, b, c, d) : newCell(b, a, c, d);
+        inserted.add(a);
+        inserted.add(b);
+        inserted.add(c);
+        inserted.add(d);
+    }
+
+    /**
+     * Pack a face into a key that's the same no matter what order its vertices are in.
+     * Only works for vertices below {@link #MAX_VERTICES}, which is far more rooms than anyone will want.
+     */
+    private static long faceKey(int a, int b, int c) {
+        // Sort the three
+        if (a > b) { int t = a; a = b; b = t; }
+        if (b > c) { int t = b; b = c; c = t; }
+        if (a > b) { int t = a; a = b; b = t; }
+        return (long) a << 42 | (long) b << 21 | c;
+    }
+
+    /**
+     * @return The orientation of the cell, with the vertex at {@code face} replaced with {@code vertex}.
+     * Every cell is kept positive, so this is negative when {@code vertex} is on the other side of that face, and zero
+     * when it's on the face's plane.
+     */
+    private double orient(int cell, int face, int vertex) {
+        int base = cell * 4;
+        return GeometricPredicates.orient3d(points,
+                face == 0 ? vertex : cellVertices[base],
+                face == 1 ? vertex : cellVertices[base + 1],
+                face == 2 ? vertex : cellVertices[base + 2],
+                face == 3 ? vertex : cellVertices[base + 3]);
+    }
+
+    /**
+     * @return Whether the vertex is inside the cell's circumsphere. Vertices exactly on it are decided by
+     * {@link GeometricPredicates#insphereSymbolic}, so every mesh over the same points picks the same cells.
+     */
+    private boolean circumsphereContains(int cell, int vertex) {
+        int base = cell * 4;
+        return GeometricPredicates.insphereSymbolic(points, cellVertices[base], cellVertices[base + 1], cellVertices[base + 2], cellVertices[base + 3], vertex) > 0;
+    }
+
+    /**
+     * @return The key of the face of the cell opposite the given vertex
+     */
+    private long faceKey(int cell, int face) {
+        int base = cell * 4;
+        return faceKey(cellVertices[base + ((face + 1) & 3)], cellVertices[base + ((face + 2) & 3)], cellVertices[base + ((face + 3) & 3)]);
+    }
+
+    public void insert(int vertex) {
+        int start = locate(vertex);
+        findCavity(start, vertex);
+        retriangulate(vertex);
+        inserted.add(vertex);
+    }
+
+    /**
+     * Walk towards the vertex, one neighbor at a time, until reaching the cell that contains it.
+     */
+    private int locate(int vertex) {
+        int cell = last;
+        int steps = 0;
+        walk:
+        while (steps++ < cellSlots) {
+            // Don't always check the faces in the same order, so we can't walk in circles
+            int offset = steps & 3;
+            for (int k = 0; k < 4; k++) {
+                int face = (k + offset) & 3;
+                if (orient(cell, face, vertex) < 0) { // The vertex is past this face
+                    int next = neighbors[cell * 4 + face];
+                    if (next == NONE) break walk; // Walked out of the mesh, which shouldn't happen
+                    cell = next;
+                    continue walk;
+                }
+            }
+            return cell;
+        }
+
+        // Couldn't walk there, so just look through everything
+        for (int candidate = 0; candidate < cellSlots; candidate++) {
+            if (isLive(candidate) && contains(candidate, vertex)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Vertex " + vertex + " is outside of the mesh");
+    }
+
+    private boolean contains(int cell, int vertex) {
+        for (int face = 0; face < 4; face++) {
+            if (orient(cell, face, vertex) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find every cell connected to start whose circumsphere contains the vertex, and put them in {@link #cavity}.
+     * Also takes in the cell across any boundary face that the vertex is on the plane of, which only happens when
+     * points are exactly cospherical or the vertex lands on a face. Otherwise, connecting that face to the vertex would
+     * make a flat cell.
+     */
+    private void findCavity(int start, int vertex) {
+        stamp++;
+        cavity.clear();
+        toCheck.clear();
+        // The cell containing the vertex is always in the cavity
+        stamps[start] = stamp;
+        toCheck.add(start);
+        double x = points[vertex * 3], y = points[vertex * 3 + 1], z = points[vertex * 3 + 2];
+        while (!toCheck.isEmpty()) {
+            int cell = toCheck.popInt();
+            cavity.add(cell);
+            // Check all the neighbors at once
+            int candidates = 0;
+            for (int face = 0; face < 4; face++) {
+                int neighbor = neighbors[cell * 4 + face];
+                if (neighbor == NONE || stamps[neighbor] == stamp) continue;
+                batchCells[candidates] = neighbor;
+                batchFaces[candidates++] = face;
+            }
+            InsphereBatch.get().classify(x, y, z, sphereX, sphereY, sphereZ, sphereRadii, batchCells, candidates, batchResults);
+            for (int i = 0; i < candidates; i++) {
+                int neighbor = batchCells[i];
+                boolean inside = switch (batchResults[i]) {
+                    case InsphereBatch.INSIDE -> true;
+                    case InsphereBatch.OUTSIDE -> false;
+                    default -> circumsphereContains(neighbor, vertex);
+                };
+                if (inside || orient(cell, batchFaces[i], vertex) <= 0) {
+                    stamps[neighbor] = stamp;
+                    toCheck.add(neighbor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the cavity with cells connecting each of its boundary faces to the new vertex.
+     */
+    private void retriangulate(int vertex) {
+        // Faces inside the cavity belong to two cavity cells, and faces on the boundary only belong to one
+        faceCounts.clear();
+        for (int i = 0; i < cavity.size(); i++) {
+            int cell = cavity.getInt(i);
+            for (int face = 0; face < 4; face++) {
+                faceCounts.addTo(faceKey(cell, face), 1);
+            }
+        }
+
+        // Each boundary face gets a new cell, made by swapping the vertex across the face for the new one.
+        // The new vertex is on the same side of the face as the old one, so it keeps the same orientation.
+        created.clear();
+        for (int i = 0; i < cavity.size(); i++) {
+            int owner = cavity.getInt(i);
+            for (int face = 0; face < 4; face++) {
+                if (faceCounts.get(faceKey(owner, face)) != 1) continue;
+                int base = owner * 4;
+                int cell = newCell(face == 0 ? vertex : cellVertices[base],
+                        face == 1 ? vertex : cellVertices[base + 1],
+                        face == 2 ? vertex : cellVertices[base + 2],
+                        face == 3 ? vertex : cellVertices[base + 3]);
+
+                int outside = neighbors[base + face];
+                neighbors[cell * 4 + face] = outside;
+                if (outside != NONE) {
+                    replaceNeighbor(outside, owner, cell);
+                }
+                created.add(cell);
+            }
+        }
+
+        // Link the new cells to each other, through the faces that have the new vertex.
+        // Each of those is shared by exactly two new cells, so link them when we see the second.
+        openFaces.clear();
+        for (int i = 0; i < created.size(); i++) {
+            int cell = created.getInt(i);
+            for (int face = 0; face < 4; face++) {
+                if (cellVertices[cell * 4 + face] == vertex) continue;
+                long key = faceKey(cell, face);
+                int match = openFaces.remove(key);
+                if (match == NONE) {
+                    openFaces.put(key, i << 2 | face);
+                } else {
+                    int other = created.getInt(match >>> 2);
+                    neighbors[cell * 4 + face] = other;
+                    neighbors[other * 4 + (match & 3)] = cell;
+                }
+            }
+        }
+
+        // Only now that we're done with them can the old cells be reused
+        for (int i = 0; i < cavity.size(); i++) {
+            int cell = cavity.getInt(i);
+            cellVertices[cell * 4] = NONE;
+            freeCells.add(cell);
+        }
+        last = created.getInt(created.size() - 1);
+    }
+
+    private void replaceNeighbor(int cell, int old, int replacement) {
+        for (int face = 0; face < 4; face++) {
+            if (neighbors[cell * 4 + face] == old) {
+                neighbors[cell * 4 + face] = replacement;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The new cell, with no neighbors yet
+     */
+    private int newCell(int a, int b, int c, int d) {
+        int cell;
+        if (freeCells.isEmpty()) {
+            cell = cellSlots++;
+            if (cellSlots > stamps.length) {
+                int capacity = stamps.length * 2;
+                cellVertices = Arrays.copyOf(cellVertices, capacity * 4);
+                neighbors = Arrays.copyOf(neighbors, capacity * 4);
+                sphereX = Arrays.copyOf(sphereX, capacity);
+                sphereY = Arrays.copyOf(sphereY, capacity);
+                sphereZ = Arrays.copyOf(sphereZ, capacity);
+                sphereRadii = Arrays.copyOf(sphereRadii, capacity);
+                stamps = Arrays.copyOf(stamps, capacity);
+            }
+        } else {
+            cell = freeCells.popInt();
+        }
+        int base = cell * 4;
+        cellVertices[base] = a;
+        cellVertices[base + 1] = b;
+        cellVertices[base + 2] = c;
+        cellVertices[base + 3] = d;
+        Arrays.fill(neighbors, base, base + 4, NONE);
+        stamps[cell] = 0;
+        cacheCircumsphere(cell);
+        return cell;
+    }
+
+    private void cacheCircumsphere(int cell) {
+        int base = cell * 4;
+        int a = cellVertices[base] * 3;
+        double ax = points[a], ay = points[a + 1], az = points[a + 2];
+        // Everything relative to a
+        int b = cellVertices[base + 1] * 3;
+        double bx = points[b] - ax, by = points[b + 1] - ay, bz = points[b + 2] - az;
+        int c = cellVertices[base + 2] * 3;
+        double cx = points[c] - ax, cy = points[c + 1] - ay, cz = points[c + 2] - az;
+        int d = cellVertices[base + 3] * 3;
+        double dx = points[d] - ax, dy = points[d + 1] - ay, dz = points[d + 2] - az;
+
+        double bb = bx * bx + by * by + bz * bz;
+        double cc = cx * cx + cy * cy + cz * cz;
+        double dd = dx * dx + dy * dy + dz * dz;
+        // c x d, d x b, b x c
+        double cdx = cy * dz - cz * dy, cdy = cz * dx - cx * dz, cdz = cx * dy - cy * dx;
+        double dbx = dy * bz - dz * by, dby = dz * bx - dx * bz, dbz = dx * by - dy * bx;
+        double bcx = by * cz - bz * cy, bcy = bz * cx - bx * cz, bcz = bx * cy - by * cx;
+        double denominator = 2 * (bx * cdx + by * cdy + bz * cdz);
+        // Rounding error in the center grows as the cell gets flatter
+        if (Math.abs(denominator) <= 2 * MIN_QUALITY * Math.sqrt(bb * cc * dd)) {
+            sphereRadii[cell] = Double.NaN;
+            return;
+        }
+
+        double ox = (bb * cdx + cc * dbx + dd * bcx) / denominator;
+        double oy = (bb * cdy + cc * dby + dd * bcy) / denominator;
+        double oz = (bb * cdz + cc * dbz + dd * bcz) / denominator;
+        sphereX[cell] = ax + ox;
+        sphereY[cell] = ay + oy;
+        sphereZ[cell] = az + oz;
+        sphereRadii[cell] = ox * ox + oy * oy + oz * oz;
+    }
+
+    /**
+     * @param out Gets the center's x, y, z, and the radius
+     * @return Whether the cell's circumsphere is known well enough to be used. If not, use the predicates instead.
+     */
+    public boolean circumsphere(int cell, double[] out) {
+        if (Double.isNaN(sphereRadii[cell])) return false;
+        out[0] = sphereX[cell];
+        out[1] = sphereY[cell];
+        out[2] = sphereZ[cell];
+        out[3] = Math.sqrt(sphereRadii[cell]);
+        return true;
+    }
+
+    /**
+     * @return How many cell slots there are. Use with {@link #isLive}.
+     */
+    public int cellSlots() {
+        return cellSlots;
+    }
+
+    public boolean isLive(int cell) {
+        return cellVertices[cell * 4] != NONE;
+    }
+
+    /**
+     * @param index Which of the cell's vertices, 0-3
+     */
+    public int cellVertex(int cell, int index) {
+        return cellVertices[cell * 4 + index];
+    }
+
+    /**
+     * Checks that no cell's circumsphere contains a vertex that it isn't made of. Looks at every cell and vertex, so
+     * this is very slow.
+     */
+    public boolean isDelaunay() {
+        byte[] results = new byte[cellSlots];
+        for (int i = 0; i < inserted.size(); i++) {
+            int vertex = inserted.getInt(i);
+            InsphereBatch.get().classify(points[vertex * 3], points[vertex * 3 + 1], points[vertex * 3 + 2], sphereX, sphereY, sphereZ, sphereRadii, 0, cellSlots, results);
+            for (int cell = 0; cell < cellSlots; cell++) {
+                if (results[cell] == InsphereBatch.OUTSIDE || !isLive(cell)) continue;
+                int base = cell * 4;
+                if (cellVertices[base] == vertex || cellVertices[base + 1] == vertex || cellVertices[base + 2] == vertex || cellVertices[base + 3] == vertex) {
+                    continue;
+                }
+                if (results[cell] == InsphereBatch.INSIDE || circumsphereContains(cell, vertex)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that each cell made by the last insert is locally Delaunay - that the vertex across each of its faces isn't
+     * in its circumsphere. Nothing else changed, so checking this after every insert checks the whole mesh, for about
+     * the cost of the insert itself.
+     * @return How many faces aren't locally Delaunay. Faces between two new cells may be counted twice.
+     */
+    public int lastInsertViolations() {
+        int violations = 0;
+        for (int i = 0; i < created.size(); i++) {
+            int cell = created.getInt(i);
+            for (int face = 0; face < 4; face++) {
+                int neighbor = neighbors[cell * 4 + face];
+                if (neighbor == NONE) continue;
+                if (circumsphereContains(cell, cellVertices[neighbor * 4 + faceTowards(neighbor, cell)])) {
+                    violations++;
+                }
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * @return The face of the cell that's shared with the neighbor
+     */
+    private int faceTowards(int cell, int neighbor) {
+        for (int face = 0; face < 3; face++) {
+            if (neighbors[cell * 4 + face] == neighbor) return face;
+        }
+        return 3;
+    }
+}
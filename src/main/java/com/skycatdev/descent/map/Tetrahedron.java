@@ -2,21 +2,26 @@ package com.skycatdev.descent.map;
 
 import net.minecraft.util.math.Vec3d;
 
-public record Tetrahedron(Vec3d a, Vec3d b, Vec3d c, Vec3d d, Sphere circumsphere) {
-
-    public Tetrahedron(Vec3d a, Vec3d b, Vec3d c, Vec3d d) {
-        this(a, b, c, d, Sphere.circumsphere(a, b, c, d));
-    }
+public record Tetrahedron(Vec3d a, Vec3d b, Vec3d c, Vec3d d) {
 
     public boolean hasVertex(Vec3d point) {
-        return Delaunay3D.almostEqual(point, a) ||
-               Delaunay3D.almostEqual(point, b) ||
-               Delaunay3D.almostEqual(point, c) ||
-               Delaunay3D.almostEqual(point, d);
+        return point.equals(a) || point.equals(b) || point.equals(c) || point.equals(d);
     }
 
+    /**
+     * @return Whether the point is strictly inside the circumsphere. Always false for flat tetrahedra, which don't have one.
+     */
     public boolean circumsphereContains(Vec3d vec) {
-        return vec.subtract(circumsphere.center()).squaredDistanceTo(0, 0, 0) <= circumsphere.radiusSquared();
+        double[] points = {
+                a.getX(), a.getY(), a.getZ(),
+                b.getX(), b.getY(), b.getZ(),
+                c.getX(), c.getY(), c.getZ(),
+                d.getX(), d.getY(), d.getZ(),
+                vec.getX(), vec.getY(), vec.getZ()
+        };
+        double orientation = GeometricPredicates.orient3d(points, 0, 1, 2, 3);
+        // insphere wants positive orientation, and its sign flips otherwise
+        return Math.signum(orientation) * GeometricPredicates.insphere(points, 0, 1, 2, 3, 4) > 0;
     }
 
 }
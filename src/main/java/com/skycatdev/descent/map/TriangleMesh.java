@@ -0,0 +1,308 @@
+package com.skycatdev.descent.map;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The 2D version of {@link TetrahedralMesh}, for when every room is on one plane. A Delaunay triangulation that's built
+ * one vertex at a time, where every triangle knows its neighbors, so each insert only looks at the triangles around the
+ * new vertex.
+ */
+public class TriangleMesh {
+    private static final int NONE = -1;
+    /**
+     * x, y of every vertex that may be inserted, including the enclosing ones
+     */
+    private final double[] points;
+    /**
+     * The three vertices of each cell, always counterclockwise. The first is {@link #NONE} for dead cells.
+     */
+    private int[] cellVertices;
+    /**
+     * The neighbor across the edge opposite each vertex, or {@link #NONE} on the outside of the mesh
+     */
+    private int[] neighbors;
+    /**
+     * Used to mark cells while searching, instead of a set
+     */
+    private int[] stamps;
+    private int stamp = 0;
+    /**
+     * How many cell slots have ever been used
+     */
+    private int cellSlots = 0;
+    private final IntArrayList freeCells = new IntArrayList();
+    /**
+     * Where to start walking from, usually the last cell made
+     */
+    private int last;
+    /**
+     * Every vertex in the mesh so far, for {@link #isDelaunay()}
+     */
+    private final IntArrayList inserted = new IntArrayList();
+    // Kept around so each insert doesn't need new ones
+    private final IntArrayList cavity = new IntArrayList();
+    private final IntArrayList toCheck = new IntArrayList();
+    private final IntArrayList created = new IntArrayList();
+    /**
+     * How many cavity cells each edge belongs to
+     */
+    private final Long2IntOpenHashMap edgeCounts = new Long2IntOpenHashMap();
+    /**
+     * Edges of new cells that haven't been linked yet, to the new cell's index in created << 2 | the edge
+     */
+    private final Long2IntOpenHashMap openEdges = new Long2IntOpenHashMap();
+
+    /**
+     * @param points x, y of every vertex that may be inserted
+     * @param a      The index of the first vertex of a triangle that contains every vertex that will be inserted
+     */
+    public TriangleMesh(double[] points, int a, int b, int c) {
+        this.points = points;
+        int capacity = 64;
+        cellVertices = new int[capacity * 3];
+        neighbors = new int[capacity * 3];
+        stamps = new int[capacity];
+        openEdges.defaultReturnValue(NONE);
+
+        last = GeometricPredicates.orient2d(points, a, b, c) > 0 ? newCell(a, b, c) : newCell(b, a, c);
+        inserted.add(a);
+        inserted.add(b);
+        inserted.add(c);
+    }
+
+    private static long packEdge(int a, int b) {
+        return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+    }
+
+    /**
+     * @return The key of the edge of the cell opposite the given vertex
+     */
+    private long edgeKey(int cell, int edge) {
+        int base = cell * 3;
+        return packEdge(cellVertices[base + (edge + 1) % 3], cellVertices[base + (edge + 2) % 3]);
+    }
+
+    /**
+     * @return The orientation of the cell, with the vertex at {@code edge} replaced with {@code vertex}.
+     * Every cell is kept counterclockwise, so this is negative when {@code vertex} is on the other side of that edge.
+     */
+    private double orient(int cell, int edge, int vertex) {
+        int base = cell * 3;
+        return GeometricPredicates.orient2d(points,
+                edge == 0 ? vertex : cellVertices[base],
+                edge == 1 ? vertex : cellVertices[base + 1],
+                edge == 2 ? vertex : cellVertices[base + 2]);
+    }
+
+    /**
+     * @return Whether the vertex is strictly inside the cell's circumcircle
+     */
+    private boolean circumcircleContains(int cell, int vertex) {
+        int base = cell * 3;
+        return GeometricPredicates.incircle(points, cellVertices[base], cellVertices[base + 1], cellVertices[base + 2], vertex) > 0;
+    }
+
+    public void insert(int vertex) {
+        int start = locate(vertex);
+        findCavity(start, vertex);
+        retriangulate(vertex);
+        inserted.add(vertex);
+    }
+
+    /**
+     * Walk towards the vertex, one neighbor at a time, until reaching the cell that contains it.
+     */
+    private int locate(int vertex) {
+        int cell = last;
+        int steps = 0;
+        walk:
+        while (steps++ < cellSlots) {
+            // Don't always check the edges in the same order, so we can't walk in circles
+            int offset = steps % 3;
+            for (int k = 0; k < 3; k++) {
+                int edge = (k + offset) % 3;
+                if (orient(cell, edge, vertex) < 0) { // The vertex is past this edge
+                    int next = neighbors[cell * 3 + edge];
+                    if (next == NONE) break walk; // Walked out of the mesh, which shouldn't happen
+                    cell = next;
+                    continue walk;
+                }
+            }
+            return cell;
+        }
+
+        // Couldn't walk there, so just look through everything
+        for (int candidate = 0; candidate < cellSlots; candidate++) {
+            if (isLive(candidate) && contains(candidate, vertex)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Vertex " + vertex + " is outside of the mesh");
+    }
+
+    private boolean contains(int cell, int vertex) {
+        for (int edge = 0; edge < 3; edge++) {
+            if (orient(cell, edge, vertex) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Find every cell connected to start whose circumcircle contains the vertex, and put them in {@link #cavity}.
+     * Like {@link TetrahedralMesh}, also takes in the cell across any boundary edge that's in line with the vertex.
+     */
+    private void findCavity(int start, int vertex) {
+        stamp++;
+        cavity.clear();
+        toCheck.clear();
+        // The cell containing the vertex is always in the cavity
+        stamps[start] = stamp;
+        toCheck.add(start);
+        while (!toCheck.isEmpty()) {
+            int cell = toCheck.popInt();
+            cavity.add(cell);
+            for (int edge = 0; edge < 3; edge++) {
+                int neighbor = neighbors[cell * 3 + edge];
+                if (neighbor == NONE || stamps[neighbor] == stamp) continue;
+                if (circumcircleContains(neighbor, vertex) || orient(cell, edge, vertex) <= 0) {
+                    stamps[neighbor] = stamp;
+                    toCheck.add(neighbor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the cavity with cells connecting each of its boundary edges to the new vertex.
+     */
+    private void retriangulate(int vertex) {
+        // Edges inside the cavity belong to two cavity cells, and edges on the boundary only belong to one
+        edgeCounts.clear();
+        for (int i = 0; i < cavity.size(); i++) {
+            int cell = cavity.getInt(i);
+            for (int edge = 0; edge < 3; edge++) {
+                edgeCounts.addTo(edgeKey(cell, edge), 1);
+            }
+        }
+
+        // Each boundary edge gets a new cell, made by swapping the vertex across the edge for the new one
+        created.clear();
+        for (int i = 0; i < cavity.size(); i++) {
+            int owner = cavity.getInt(i);
+            for (int edge = 0; edge < 3; edge++) {
+                if (edgeCounts.get(edgeKey(owner, edge)) != 1) continue;
+                int base = owner * 3;
+                int cell = newCell(edge == 0 ? vertex : cellVertices[base],
+                        edge == 1 ? vertex : cellVertices[base + 1],
+                        edge == 2 ? vertex : cellVertices[base + 2]);
+
+                int outside = neighbors[base + edge];
+                neighbors[cell * 3 + edge] = outside;
+                if (outside != NONE) {
+                    replaceNeighbor(outside, owner, cell);
+                }
+                created.add(cell);
+            }
+        }
+
+        // Link the new cells to each other, through the edges that have the new vertex
+        openEdges.clear();
+        for (int i = 0; i < created.size(); i++) {
+            int cell = created.getInt(i);
+            for (int edge = 0; edge < 3; edge++) {
+                if (cellVertices[cell * 3 + edge] == vertex) continue;
+                long key = edgeKey(cell, edge);
+                int match = openEdges.remove(key);
+                if (match == NONE) {
+                    openEdges.put(key, i << 2 | edge);
+                } else {
+                    int other = created.getInt(match >>> 2);
+                    neighbors[cell * 3 + edge] = other;
+                    neighbors[other * 3 + (match & 3)] = cell;
+                }
+            }
+        }
+
+        // Only now that we're done with them can the old cells be reused
+        for (int i = 0; i < cavity.size(); i++) {
+            int cell = cavity.getInt(i);
+            cellVertices[cell * 3] = NONE;
+            freeCells.add(cell);
+        }
+        last = created.getInt(created.size() - 1);
+    }
+
+    private void replaceNeighbor(int cell, int old, int replacement) {
+        for (int edge = 0; edge < 3; edge++) {
+            if (neighbors[cell * 3 + edge] == old) {
+                neighbors[cell * 3 + edge] = replacement;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The new cell, with no neighbors yet
+     */
+    private int newCell(int a, int b, int c) {
+        int cell;
+        if (freeCells.isEmpty()) {
+            cell = cellSlots++;
+            if (cellSlots > stamps.length) {
+                int capacity = stamps.length * 2;
+                cellVertices = Arrays.copyOf(cellVertices, capacity * 3);
+                neighbors = Arrays.copyOf(neighbors, capacity * 3);
+                stamps = Arrays.copyOf(stamps, capacity);
+            }
+        } else {
+            cell = freeCells.popInt();
+        }
+        int base = cell * 3;
+        cellVertices[base] = a;
+        cellVertices[base + 1] = b;
+        cellVertices[base + 2] = c;
+        Arrays.fill(neighbors, base, base + 3, NONE);
+        stamps[cell] = 0;
+        return cell;
+    }
+
+    /**
+     * @return How many cell slots there are. Use with {@link #isLive}.
+     */
+    public int cellSlots() {
+        return cellSlots;
+    }
+
+    public boolean isLive(int cell) {
+        return cellVertices[cell * 3] != NONE;
+    }
+
+    /**
+     * @param index Which of the cell's vertices, 0-2
+     */
+    public int cellVertex(int cell, int index) {
+        return cellVertices[cell * 3 + index];
+    }
+
+    /**
+     * Checks that no cell's circumcircle contains a vertex that it isn't made of. Looks at every cell and vertex, so
+     * this is very slow.
+     */
+    public boolean isDelaunay() {
+        for (int cell = 0; cell < cellSlots; cell++) {
+            if (!isLive(cell)) continue;
+            int base = cell * 3;
+            for (int i = 0; i < inserted.size(); i++) {
+                int vertex = inserted.getInt(i);
+                if (cellVertices[base] == vertex || cellVertices[base + 1] == vertex || cellVertices[base + 2] == vertex) {
+                    continue;
+                }
+                if (circumcircleContains(cell, vertex)) return false;
+            }
+        }
+        return true;
+    }
+}
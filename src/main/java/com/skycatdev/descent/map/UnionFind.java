@@ -0,0 +1,48 @@
+package com.skycatdev.descent.map;
+
+/**
+ * Keeps track of which vertices are connected, as a forest where each tree's root stands for everything in it. Both
+ * operations are almost O(1).
+ */
+public class UnionFind {
+    private final int[] parents;
+    private final byte[] ranks;
+
+    public UnionFind(int size) {
+        parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            parents[i] = i;
+        }
+        ranks = new byte[size];
+    }
+
+    /**
+     * @return The root of the vertex's tree, which is the same for every vertex connected to it
+     */
+    public int find(int vertex) {
+        while (parents[vertex] != vertex) {
+            // Skip every other step on the way up, so the next find is shorter
+            parents[vertex] = parents[parents[vertex]];
+            vertex = parents[vertex];
+        }
+        return vertex;
+    }
+
+    /**
+     * @return Whether a and b weren't connected before
+     */
+    public boolean union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) return false;
+        if (ranks[a] < ranks[b]) {
+            parents[a] = b;
+        } else {
+            parents[b] = a;
+            if (ranks[a] == ranks[b]) {
+                ranks[a]++;
+            }
+        }
+        return true;
+    }
+}
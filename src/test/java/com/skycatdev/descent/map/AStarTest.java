@@ -175,6 +175,25 @@ public class AStarTest {
         }
     }
 
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void findsPlacedPiecesByPosition() {
+        BoundsIndex index = new BoundsIndex();
+        DungeonPiece room = ROOM_3_3_3.withTransform(MapTransform.translation(6, 0, 0));
+        DungeonPiece hall = HALL_1_1_1.withTransform(MapTransform.translation(9, 1, 1));
+        index.add(room.dungeonBounds());
+        index.add(hall);
+
+        List<DungeonPiece> found = new LinkedList<>();
+        index.forEachPieceAt(new BlockPos(9, 1, 1), found::add);
+        assertThat(found).containsExactly(hall);
+        // Only pieces added as pieces can be found
+        found.clear();
+        index.forEachPieceAt(new BlockPos(7, 1, 1), found::add);
+        assertThat(found).isEmpty();
+        assertThat(index.intersectsAny(BlockBounds.ofBlock(new BlockPos(7, 1, 1)))).isTrue();
+    }
+
     @Test
     @Execution(ExecutionMode.CONCURRENT)
     void addAlreadyPlacedOne() {
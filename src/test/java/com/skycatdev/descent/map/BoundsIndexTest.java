@@ -0,0 +1,53 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import xyz.nucleoid.map_templates.BlockBounds;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundsIndexTest {
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void intersects() {
+        BoundsIndex index = new BoundsIndex();
+        index.add(BlockBounds.of(0, 0, 0, 2, 2, 2));
+        index.add(BlockBounds.of(20, -20, 5, 40, -10, 6));
+
+        assertThat(index.intersectsAny(BlockBounds.of(2, 2, 2, 3, 3, 3))).isTrue();
+        assertThat(index.intersectsAny(BlockBounds.of(30, -15, 0, 30, -15, 10))).isTrue();
+        assertThat(index.intersectsAny(BlockBounds.of(3, 0, 0, 3, 2, 2))).isFalse();
+        assertThat(index.intersectsAny(BlockBounds.of(-100, -100, -100, -50, -50, -50))).isFalse();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void persistentIntersects() {
+        PersistentBoundsIndex index = PersistentBoundsIndex.EMPTY;
+        for (int i = 0; i < 200; i++) {
+            index = index.with(BlockBounds.of(i * 3, i % 7, -i, i * 3 + 1, i % 7 + 1, -i));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(index.intersectsAny(BlockBounds.ofBlock(new BlockPos(i * 3 + 1, i % 7, -i)))).isTrue();
+            assertThat(index.intersectsAny(BlockBounds.ofBlock(new BlockPos(i * 3 + 2, i % 7, -i)))).isFalse();
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void persistentDoesNotChange() {
+        BlockBounds a = BlockBounds.of(0, 0, 0, 1, 1, 1);
+        BlockBounds b = BlockBounds.of(0, 0, 5, 1, 1, 6);
+        PersistentBoundsIndex withA = PersistentBoundsIndex.EMPTY.with(a);
+        PersistentBoundsIndex withAB = withA.with(b);
+
+        assertThat(PersistentBoundsIndex.EMPTY.intersectsAny(a)).isFalse();
+        assertThat(withA.intersectsAny(a)).isTrue();
+        assertThat(withA.intersectsAny(b)).isFalse();
+        assertThat(withAB.intersectsAny(a)).isTrue();
+        assertThat(withAB.intersectsAny(b)).isTrue();
+    }
+}
@@ -9,9 +9,11 @@ import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class Delaunay3DTest {
     @Test
@@ -134,6 +136,90 @@ public class Delaunay3DTest {
         // TODO: Check all are connected
     }
 
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTriangulateFlatGrid() {
+        // A single floor of rooms. Each square of the grid should get one diagonal.
+        int width = 6;
+        int depth = 4;
+        double[] points = new double[width * depth * 3];
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            for (int z = 0; z < depth; z++) {
+                points[i++] = x * 10 + 0.5;
+                points[i++] = 7.5;
+                points[i++] = z * 10 + 0.5;
+            }
+        }
+        List<RoomEdge> edges = Delaunay3D.triangulate(points);
+        assertThat(edges)
+                .hasSize(width * (depth - 1) + depth * (width - 1) + (width - 1) * (depth - 1))
+                .allMatch(edge -> edge.length() < 15);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTriangulateCollinear() {
+        double[] points = {
+                20, 10, 0,
+                0, 0, 0,
+                40, 20, 0,
+                10, 5, 0,
+                30, 15, 0
+        };
+        assertThat(Delaunay3D.triangulate(points))
+                .extracting(edge -> edge.u() + "-" + edge.v())
+                .containsExactlyInAnyOrder("1-3", "0-3", "0-4", "2-4");
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTriangulateParallelMatches() {
+        Random random = new Random(17);
+        int count = 6000;
+        double[] points = new double[count * 3];
+        for (int i = 0; i < count; i++) {
+            points[i * 3] = random.nextDouble() * 1000;
+            points[i * 3 + 1] = random.nextDouble() * 200;
+            points[i * 3 + 2] = random.nextDouble() * 1000;
+        }
+        assertThat(Delaunay3D.triangulate(points, true))
+                .isEqualTo(Delaunay3D.triangulate(points, false));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTriangulateParallelGrid() {
+        // Grid-aligned rooms have lots of points on the same sphere, so the ties have to be broken the same way
+        for (boolean offsets : new boolean[]{false, true}) {
+            Random random = new Random(170);
+            int width = 24;
+            int height = 8;
+            int count = width * height * width;
+            double[] points = new double[count * 3];
+            int i = 0;
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    for (int z = 0; z < width; z++) {
+                        points[i++] = x * 10 + 0.5 + (offsets ? random.nextInt(3) * 0.5 : 0);
+                        points[i++] = y * 10 + 0.5 + (offsets ? random.nextInt(3) * 0.5 : 0);
+                        points[i++] = z * 10 + 0.5;
+                    }
+                }
+            }
+            assertThat(Delaunay3D.triangulate(points, true))
+                    .isEqualTo(Delaunay3D.triangulate(points, false));
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTooManyPoints() {
+        // Faces of the mesh wouldn't have unique keys anymore
+        double[] points = new double[(Delaunay3D.MAX_POINTS + 1) * 3];
+        assertThatThrownBy(() -> Delaunay3D.triangulate(points)).isInstanceOf(IllegalArgumentException.class);
+    }
+
 //    @Test
 //    @Execution(ExecutionMode.CONCURRENT)
 //    void testTriangulate6Strange() {
@@ -0,0 +1,72 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelaunayValidatorTest {
+    private static double[] randomPoints(Random random, int count) {
+        double[] points = new double[(count + 4) * 3];
+        for (int i = 0; i < count * 3; i++) {
+            points[i] = random.nextDouble() * 10;
+        }
+        double[] enclosing = {-1000, -1000, -1000, 1000, -1000, -1000, 0, 1000, -1000, 0, 0, 1000};
+        System.arraycopy(enclosing, 0, points, count * 3, enclosing.length);
+        return points;
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void everyInsertIsLocallyDelaunay() {
+        double[] points = randomPoints(new Random(19), 200);
+        TetrahedralMesh mesh = new TetrahedralMesh(points, 200, 201, 202, 203);
+        for (int vertex = 0; vertex < 200; vertex++) {
+            mesh.insert(vertex);
+            assertThat(mesh.lastInsertViolations()).isZero();
+        }
+        assertThat(mesh.isDelaunay()).isTrue();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void findsMovedVertices() {
+        Random random = new Random(190);
+        double[] points = randomPoints(random, 60);
+        TetrahedralMesh mesh = new TetrahedralMesh(points, 60, 61, 62, 63);
+        for (int vertex = 0; vertex < 60; vertex++) {
+            mesh.insert(vertex);
+        }
+        // Move everything around without telling the mesh
+        for (int i = 0; i < 60 * 3; i++) {
+            points[i] = random.nextDouble() * 10;
+        }
+        assertThat(mesh.lastInsertViolations()).isPositive();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void triangulatingCountsNoViolations() {
+        Random random = new Random(1900);
+        double[] points = new double[500 * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(100) + random.nextDouble();
+        }
+        Delaunay3D.triangulate(points);
+        assertThat(DelaunayValidator.mode()).isEqualTo(DelaunayValidator.Mode.FULL);
+        assertThat(DelaunayValidator.violations()).isZero();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void parsesModesLeniently() {
+        assertThat(DelaunayValidator.parseMode(null)).isEqualTo(DelaunayValidator.Mode.SAMPLED);
+        assertThat(DelaunayValidator.parseMode(" Full ")).isEqualTo(DelaunayValidator.Mode.FULL);
+        assertThat(DelaunayValidator.parseMode("off")).isEqualTo(DelaunayValidator.Mode.OFF);
+        assertThat(DelaunayValidator.parseMode("everything")).isEqualTo(DelaunayValidator.Mode.SAMPLED);
+        assertThat(DelaunayValidator.parseMode("")).isEqualTo(DelaunayValidator.Mode.SAMPLED);
+    }
+}
@@ -0,0 +1,110 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.UnknownNullability;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DungeonPieceCacheTest {
+    protected static final Identifier HALL_ID = Identifier.of(Descent.MOD_ID, "test/hall_1_1_1");
+    protected static final Identifier ROOM_ID = Identifier.of(Descent.MOD_ID, "test/room_3_3_3");
+    protected static @UnknownNullability MapTemplate HALL_1_1_1_TEMPLATE;
+    protected static @UnknownNullability MapTemplate ROOM_3_3_3_TEMPLATE;
+
+    @BeforeAll
+    static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        MapTemplate hall_1_1_1 = MapTemplate.createEmpty();
+        hall_1_1_1.setBlockState(BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState());
+        hall_1_1_1.getMetadata().addRegion(DungeonPiece.OPENING_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        hall_1_1_1.getMetadata().addRegion(DungeonPiece.DUNGEON_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        HALL_1_1_1_TEMPLATE = hall_1_1_1;
+
+        MapTemplate room_3_3_3 = MapTemplate.createEmpty();
+        room_3_3_3.setBounds(BlockBounds.of(0, 0, 0, 2, 2, 2));
+        room_3_3_3.getMetadata().addRegion(DungeonPiece.DUNGEON_MARKER, BlockBounds.of(0, 0, 0, 2, 2, 2));
+        room_3_3_3.getMetadata().addRegion(DungeonPiece.OPENING_MARKER, BlockBounds.ofBlock(new BlockPos(1, 1, 0)));
+        ROOM_3_3_3_TEMPLATE = room_3_3_3;
+    }
+
+    protected static DungeonPieceCache.Loader countingLoader(AtomicInteger loads) {
+        return (server, id) -> {
+            loads.incrementAndGet();
+            if (id.equals(HALL_ID)) return HALL_1_1_1_TEMPLATE;
+            if (id.equals(ROOM_ID)) return ROOM_3_3_3_TEMPLATE;
+            throw new IOException("No template for " + id);
+        };
+    }
+
+    @SuppressWarnings("DataFlowIssue") // The loader doesn't need a server
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void loadsOnce() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        DungeonPieceCache cache = new DungeonPieceCache(4, countingLoader(loads));
+
+        DungeonPieceCache.Entry first = cache.get(ROOM_ID, null);
+        DungeonPieceCache.Entry second = cache.get(ROOM_ID, null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("DataFlowIssue") // The loader doesn't need a server
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void centered() throws IOException {
+        DungeonPieceCache cache = new DungeonPieceCache(4, countingLoader(new AtomicInteger()));
+
+        DungeonPieceCache.Entry entry = cache.get(ROOM_ID, null);
+
+        assertThat(entry.piece().dungeonBounds()).isEqualTo(BlockBounds.of(0, 0, 0, 2, 2, 2));
+        assertThat(entry.centered().dungeonBounds()).isEqualTo(BlockBounds.of(-1, -1, -1, 1, 1, 1));
+    }
+
+    @SuppressWarnings("DataFlowIssue") // The loader doesn't need a server
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void invalidate() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        DungeonPieceCache cache = new DungeonPieceCache(4, countingLoader(loads));
+
+        cache.get(ROOM_ID, null);
+        cache.invalidateAll();
+        assertThat(cache.contains(ROOM_ID)).isFalse();
+        cache.get(ROOM_ID, null);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @SuppressWarnings("DataFlowIssue") // The loader doesn't need a server
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void evictsLeastRecentlyUsed() throws IOException {
+        DungeonPieceCache cache = new DungeonPieceCache(1, countingLoader(new AtomicInteger()));
+
+        cache.get(ROOM_ID, null);
+        cache.get(HALL_ID, null);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.contains(HALL_ID)).isTrue();
+        assertThat(cache.contains(ROOM_ID)).isFalse();
+    }
+}
@@ -133,4 +133,24 @@ public class DungeonPieceTest {
                 .containsExactlyInAnyOrderElementsOf(expectedOpenings);
     }
 
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void placementKeys() {
+        DungeonPiece translated = ROOM_3_3_3.withTransform(MapTransform.translation(3, 0, 0));
+        DungeonPiece.Opening toMatch = ROOM_3_3_3.openings().stream()
+                .filter(opening -> opening.direction().equals(Direction.EAST))
+                .findFirst()
+                .orElseThrow();
+        DungeonPiece matched = ROOM_3_3_3.matchedWith(toMatch)
+                .map(AStar.ProtoNode::piece)
+                .findFirst()
+                .orElseThrow();
+
+        assertThat(matched.dungeonBounds()).isEqualTo(translated.dungeonBounds());
+        assertThat(matched.key()).isSameAs(translated.key());
+        assertThat(matched).isEqualTo(translated);
+        assertThat(matched.equivalentTo(translated)).isTrue();
+        assertThat(translated.key()).isNotEqualTo(ROOM_3_3_3.key());
+        assertThat(HALL_1_1_1.withTransform(MapTransform.translation(3, 0, 0)).key()).isNotEqualTo(translated.key());
+    }
 }
@@ -0,0 +1,163 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GeometricPredicatesTest {
+    /**
+     * @return The determinant, by expanding along the first row
+     */
+    private static BigDecimal determinant(BigDecimal[][] matrix) {
+        int size = matrix.length;
+        if (size == 1) {
+            return matrix[0][0];
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int column = 0; column < size; column++) {
+            BigDecimal[][] minor = new BigDecimal[size - 1][size - 1];
+            for (int row = 1; row < size; row++) {
+                for (int from = 0, to = 0; from < size; from++) {
+                    if (from != column) {
+                        minor[row - 1][to++] = matrix[row][from];
+                    }
+                }
+            }
+            BigDecimal term = matrix[0][column].multiply(determinant(minor));
+            sum = column % 2 == 0 ? sum.add(term) : sum.subtract(term);
+        }
+        return sum;
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void orient3d() {
+        double[] points = {
+                0, 0, 0,
+                1, 0, 0,
+                0, 1, 0,
+                0, 0, -1,
+                0, 0, 1,
+                5, 7, 0
+        };
+        assertThat(GeometricPredicates.orient3d(points, 0, 1, 2, 3)).isPositive();
+        assertThat(GeometricPredicates.orient3d(points, 0, 1, 2, 4)).isNegative();
+        assertThat(GeometricPredicates.orient3d(points, 0, 1, 2, 5)).isZero();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void orient3dNearlyCoplanar() {
+        // Everything is on the plane z = x, but far away, so the differences don't round nicely
+        for (int i = 1; i < 200; i++) {
+            double far = 1e9 + i * 0.1;
+            double[] points = {
+                    0.1, 0.3, 0.1,
+                    far, 0.7, far,
+                    0.3, far, 0.3,
+                    far * 0.7, far * 1.3, far * 0.7,
+                    far * 0.7, far * 1.3, Math.nextUp(far * 0.7),
+                    far * 0.7, far * 1.3, Math.nextDown(far * 0.7)
+            };
+            assertThat(GeometricPredicates.orient3d(points, 0, 1, 2, 3)).isZero();
+            double above = GeometricPredicates.orient3d(points, 0, 1, 2, 4);
+            double below = GeometricPredicates.orient3d(points, 0, 1, 2, 5);
+            assertThat(above).isNotZero();
+            assertThat(Math.signum(above)).isEqualTo(-Math.signum(below));
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void insphere() {
+        double[] points = {
+                1, 0, 0,
+                0, 1, 0,
+                0, 0, 1,
+                -1, 0, 0,
+                0, -1, 0,
+                0, -Math.nextUp(1.0), 0,
+                0, -Math.nextDown(1.0), 0
+        };
+        // Make sure it's positively oriented first
+        assertThat(GeometricPredicates.orient3d(points, 0, 1, 2, 3)).isPositive();
+        assertThat(GeometricPredicates.insphere(points, 0, 1, 2, 3, 4)).isZero();
+        assertThat(GeometricPredicates.insphere(points, 0, 1, 2, 3, 5)).isNegative();
+        assertThat(GeometricPredicates.insphere(points, 0, 1, 2, 3, 6)).isPositive();
+        // Swapping two vertices flips it
+        assertThat(GeometricPredicates.insphere(points, 1, 0, 2, 3, 6)).isNegative();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void insphereSymbolicMatchesPerturbing() {
+        // A 3x3x3 grid, where lots of points are on the same sphere
+        double[] points = new double[27 * 3];
+        for (int i = 0; i < 27; i++) {
+            points[i * 3] = i / 9 * 2;
+            points[i * 3 + 1] = i / 3 % 3 * 2;
+            points[i * 3 + 2] = i % 3 * 2;
+        }
+        Random random = new Random(14);
+        int ties = 0;
+        while (ties < 2000) {
+            int[] chosen = random.ints(0, 27).distinct().limit(5).toArray();
+            if (GeometricPredicates.orient3d(points, chosen[0], chosen[1], chosen[2], chosen[3]) < 0) {
+                chosen = new int[]{chosen[1], chosen[0], chosen[2], chosen[3], chosen[4]};
+            }
+            if (GeometricPredicates.orient3d(points, chosen[0], chosen[1], chosen[2], chosen[3]) == 0
+                || GeometricPredicates.insphere(points, chosen[0], chosen[1], chosen[2], chosen[3], chosen[4]) != 0) {
+                continue;
+            }
+            ties++;
+            // Really lift each point, by far more the bigger its index is
+            BigDecimal[][] matrix = new BigDecimal[5][];
+            for (int i = 0; i < 5; i++) {
+                int point = chosen[i];
+                double x = points[point * 3], y = points[point * 3 + 1], z = points[point * 3 + 2];
+                BigDecimal lift = new BigDecimal(x * x + y * y + z * z).add(BigDecimal.ONE.movePointLeft(20 * (27 - point)));
+                matrix[i] = new BigDecimal[]{new BigDecimal(x), new BigDecimal(y), new BigDecimal(z), lift, BigDecimal.ONE};
+            }
+            assertThat(Math.signum(GeometricPredicates.insphereSymbolic(points, chosen[0], chosen[1], chosen[2], chosen[3], chosen[4])))
+                    .isEqualTo((double) determinant(matrix).signum());
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void exactMatchesBigDecimal() {
+        Random random = new Random(15);
+        for (int test = 0; test < 3000; test++) {
+            double[] points = new double[5 * 3];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = switch (test % 3) {
+                    // A grid, so they can be moved to the origin exactly
+                    case 0 -> random.nextInt(3) * 16.0;
+                    // Off a grid by an ulp or two
+                    case 1 -> random.nextInt(3) + Math.ulp(1.0) * random.nextInt(3);
+                    // Too far apart in size to move to the origin
+                    default -> random.nextInt(3) * Math.scalb(1.0, random.nextInt(80) - 40);
+                };
+            }
+            BigDecimal[][] orientation = new BigDecimal[4][];
+            BigDecimal[][] sphere = new BigDecimal[5][];
+            for (int i = 0; i < 5; i++) {
+                BigDecimal x = new BigDecimal(points[i * 3]), y = new BigDecimal(points[i * 3 + 1]), z = new BigDecimal(points[i * 3 + 2]);
+                BigDecimal lift = x.multiply(x).add(y.multiply(y)).add(z.multiply(z));
+                if (i < 4) {
+                    orientation[i] = new BigDecimal[]{x, y, z, BigDecimal.ONE};
+                }
+                sphere[i] = new BigDecimal[]{x, y, z, lift, BigDecimal.ONE};
+            }
+            assertThat(Math.signum(GeometricPredicates.orient3d(points, 0, 1, 2, 3)))
+                    .isEqualTo((double) determinant(orientation).signum());
+            assertThat(Math.signum(GeometricPredicates.insphere(points, 0, 1, 2, 3, 4)))
+                    .isEqualTo((double) determinant(sphere).signum());
+        }
+    }
+}
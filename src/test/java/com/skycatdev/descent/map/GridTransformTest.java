@@ -0,0 +1,90 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapTransform;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GridTransformTest {
+    private static final BlockBounds TEMPLATE = BlockBounds.of(-3, 0, 2, 9, 5, 20);
+
+    /**
+     * Rotates a quarter turn around y, then moves
+     */
+    private static final MapTransform ROTATION = new MapTransform() {
+        @Override
+        public BlockPos.Mutable transformPoint(BlockPos.Mutable mutablePos) {
+            return mutablePos.set(-mutablePos.getZ() + 7, mutablePos.getY() - 2, mutablePos.getX() + 40);
+        }
+
+        @Override
+        public Vec3d transformedPoint(Vec3d pos) {
+            return new Vec3d(-pos.getZ() + 7, pos.getY() - 2, pos.getX() + 40);
+        }
+    };
+
+    private static void assertInverseMatches(MapTransform transform, BlockBounds box) {
+        GridTransform grid = GridTransform.of(transform, TEMPLATE);
+        assertThat(grid).isNotNull();
+        BlockBounds inverse = grid.inverseBounds(box);
+        BlockPos.Mutable world = new BlockPos.Mutable();
+        for (BlockPos pos : TEMPLATE) {
+            transform.transformPoint(world.set(pos));
+            assertThat(grid.transformPoint(new BlockPos.Mutable().set(pos))).isEqualTo(world);
+            assertThat(inverse.contains(pos)).isEqualTo(box.contains(world));
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTranslation() {
+        MapTransform transform = new StackedMapTransform(List.of(MapTransform.translation(5, -1, 3), MapTransform.translation(-20, 4, 0)));
+        assertInverseMatches(transform, BlockBounds.of(-16, 0, 0, -1, 10, 15));
+        assertInverseMatches(transform, BlockBounds.of(-100, -100, -100, -90, -90, -90));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testRotation() {
+        assertInverseMatches(ROTATION, BlockBounds.of(-16, 0, 32, -1, 3, 47));
+        assertInverseMatches(new StackedMapTransform(List.of(ROTATION, MapTransform.translation(1, 2, 3), ROTATION)), BlockBounds.of(-10, -5, 30, 20, 5, 45));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testNotGrid() {
+        MapTransform scale = new MapTransform() {
+            @Override
+            public BlockPos.Mutable transformPoint(BlockPos.Mutable mutablePos) {
+                return mutablePos.set(mutablePos.getX() * 2, mutablePos.getY(), mutablePos.getZ());
+            }
+
+            @Override
+            public Vec3d transformedPoint(Vec3d pos) {
+                return new Vec3d(pos.getX() * 2, pos.getY(), pos.getZ());
+            }
+        };
+        assertThat(GridTransform.of(scale, TEMPLATE)).isNull();
+
+        // Looks like a translation near the origin, but isn't at the corners
+        MapTransform clamp = new MapTransform() {
+            @Override
+            public BlockPos.Mutable transformPoint(BlockPos.Mutable mutablePos) {
+                return mutablePos.set(Math.min(mutablePos.getX(), 4) + 1, mutablePos.getY(), mutablePos.getZ());
+            }
+
+            @Override
+            public Vec3d transformedPoint(Vec3d pos) {
+                return new Vec3d(Math.min(pos.getX(), 4) + 1, pos.getY(), pos.getZ());
+            }
+        };
+        assertThat(GridTransform.of(clamp, TEMPLATE)).isNull();
+    }
+}
@@ -0,0 +1,66 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedHeapTest {
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void pollsInOrder() {
+        IndexedHeap<Integer, Integer> heap = new IndexedHeap<>(Comparator.naturalOrder());
+        Random random = new Random(0);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int value = random.nextInt(1000);
+            heap.offer(i, value);
+            expected.add(value);
+        }
+        expected.sort(Comparator.naturalOrder());
+
+        List<Integer> polled = new ArrayList<>();
+        while (!heap.isEmpty()) {
+            polled.add(heap.poll());
+        }
+        assertThat(polled).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void decreaseKey() {
+        IndexedHeap<String, Integer> heap = new IndexedHeap<>(Comparator.naturalOrder());
+        heap.offer("a", 5);
+        heap.offer("b", 3);
+        assertThat(heap.offer("a", 7)).isFalse();
+        assertThat(heap.offer("a", 1)).isTrue();
+
+        assertThat(heap.size()).isEqualTo(2);
+        assertThat(heap.get("a")).isEqualTo(1);
+        assertThat(heap.poll()).isEqualTo(1);
+        assertThat(heap.contains("a")).isFalse();
+        assertThat(heap.poll()).isEqualTo(3);
+        assertThat(heap.poll()).isNull();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void tiesAreFifo() {
+        IndexedHeap<String, String> heap = new IndexedHeap<>(Comparator.comparingInt(String::length));
+        heap.offer("first", "aa");
+        heap.offer("second", "bb");
+        heap.offer("third", "c");
+        heap.offer("fourth", "dd");
+
+        assertThat(heap.poll()).isEqualTo("c");
+        assertThat(heap.poll()).isEqualTo("aa");
+        assertThat(heap.poll()).isEqualTo("bb");
+        assertThat(heap.poll()).isEqualTo("dd");
+    }
+}
@@ -0,0 +1,59 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InsertionOrderTest {
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void brioIsPermutation() {
+        Random random = new Random(3);
+        double[] points = new double[500 * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(400) - 200;
+        }
+        int[] order = InsertionOrder.brio(points, 500);
+        assertThat(order).hasSize(500);
+        assertThat(order).doesNotHaveDuplicates();
+        assertThat(order).allMatch(i -> i >= 0 && i < 500);
+        assertThat(InsertionOrder.brio(points, 500)).isEqualTo(order);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void tooManyPoints() {
+        // More wouldn't fit in the sort keys, so some would be swapped for others
+        int[] indices = new int[InsertionOrder.MAX_POINTS + 1];
+        assertThatThrownBy(() -> InsertionOrder.brio(new double[3], indices)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void hilbertCurveIsContinuous() {
+        // The curve starts by filling the cube at the origin, so the first 8^3 steps are exactly the 8x8x8 cube
+        int size = 8;
+        int[][] steps = new int[size * size * size][];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    long index = InsertionOrder.hilbertIndex(x, y, z);
+                    assertThat(index).isBetween(0L, (long) steps.length - 1);
+                    assertThat(steps[(int) index]).isNull();
+                    steps[(int) index] = new int[]{x, y, z};
+                }
+            }
+        }
+        for (int i = 1; i < steps.length; i++) {
+            int distance = Math.abs(steps[i][0] - steps[i - 1][0])
+                           + Math.abs(steps[i][1] - steps[i - 1][1])
+                           + Math.abs(steps[i][2] - steps[i - 1][2]);
+            assertThat(distance).isEqualTo(1);
+        }
+    }
+}
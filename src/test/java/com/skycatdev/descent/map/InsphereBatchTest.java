@@ -0,0 +1,135 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InsphereBatchTest {
+    private static final int SPHERES = 1001; // Not a multiple of any vector size, so the tail gets checked too
+
+    private static double[][] spheres(Random random) {
+        double[][] spheres = new double[4][SPHERES];
+        for (int i = 0; i < SPHERES; i++) {
+            spheres[0][i] = random.nextDouble() * 200 - 100;
+            spheres[1][i] = random.nextDouble() * 200 - 100;
+            spheres[2][i] = random.nextDouble() * 200 - 100;
+            double radius = random.nextDouble() * 100;
+            spheres[3][i] = i % 50 == 0 ? Double.NaN : radius * radius;
+        }
+        return spheres;
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void matchesDistance() {
+        Random random = new Random(18);
+        double[][] spheres = spheres(random);
+        byte[] scalar = new byte[SPHERES];
+        byte[] best = new byte[SPHERES];
+        for (int trial = 0; trial < 100; trial++) {
+            double x = random.nextDouble() * 200 - 100, y = random.nextDouble() * 200 - 100, z = random.nextDouble() * 200 - 100;
+            new ScalarInsphereBatch().classify(x, y, z, spheres[0], spheres[1], spheres[2], spheres[3], 0, SPHERES, scalar);
+            InsphereBatch.get().classify(x, y, z, spheres[0], spheres[1], spheres[2], spheres[3], 0, SPHERES, best);
+            assertThat(best).isEqualTo(scalar);
+            for (int i = 0; i < SPHERES; i++) {
+                double dx = spheres[0][i] - x, dy = spheres[1][i] - y, dz = spheres[2][i] - z;
+                double distanceSquared = dx * dx + dy * dy + dz * dz;
+                switch (scalar[i]) {
+                    case InsphereBatch.INSIDE -> assertThat(distanceSquared).isLessThan(spheres[3][i]);
+                    case InsphereBatch.OUTSIDE -> assertThat(distanceSquared).isGreaterThan(spheres[3][i]);
+                    default -> assertThat(Double.isNaN(spheres[3][i]) || Math.abs(distanceSquared - spheres[3][i]) <= spheres[3][i] * 1e-6).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void indexedMatchesRange() {
+        Random random = new Random(180);
+        double[][] spheres = spheres(random);
+        int[] cells = new int[SPHERES];
+        for (int i = 0; i < SPHERES; i++) {
+            cells[i] = random.nextInt(SPHERES);
+        }
+        byte[] range = new byte[SPHERES];
+        byte[] indexed = new byte[SPHERES];
+        double x = random.nextDouble() * 200 - 100, y = random.nextDouble() * 200 - 100, z = random.nextDouble() * 200 - 100;
+        InsphereBatch.get().classify(x, y, z, spheres[0], spheres[1], spheres[2], spheres[3], 0, SPHERES, range);
+        // Odd count, so some cells are left out
+        InsphereBatch.get().classify(x, y, z, spheres[0], spheres[1], spheres[2], spheres[3], cells, SPHERES - 2, indexed);
+        for (int i = 0; i < SPHERES - 2; i++) {
+            assertThat(indexed[i]).isEqualTo(range[cells[i]]);
+        }
+        // Only part of the range
+        InsphereBatch.get().classify(x, y, z, spheres[0], spheres[1], spheres[2], spheres[3], 3, 7, indexed);
+        for (int i = 3; i < 7; i++) {
+            assertThat(indexed[i - 3]).isEqualTo(range[i]);
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void usesVectorsWhenAvailable() {
+        // Tests run with the module, so this makes sure the vector source set is actually on the classpath
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            assertThat(InsphereBatch.get().getClass().getName()).isEqualTo("com.skycatdev.descent.map.VectorInsphereBatch");
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark() {
+        Random random = new Random(1800);
+        double[][] spheres = spheres(random);
+        byte[] out = new byte[SPHERES];
+        // Up to four cells picked by index, like a cell's neighbors when the mesh looks for a cavity
+        int[] cells = new int[4 * 1024];
+        int[] counts = new int[1024];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = random.nextInt(SPHERES);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = random.nextInt(4) + 1;
+        }
+        int[] neighbors = new int[4];
+        InsphereBatch[] batches = {new ScalarInsphereBatch(), InsphereBatch.get()};
+        for (InsphereBatch batch : batches) {
+            // Warm up first
+            long start = 0;
+            for (int round = 0; round < 2; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < 200_000; i++) {
+                    batch.classify(i % 100, 0, 0, spheres[0], spheres[1], spheres[2], spheres[3], 0, SPHERES, out);
+                }
+            }
+            double perSecond = 200_000.0 * SPHERES / ((System.nanoTime() - start) / 1e9);
+            System.out.printf("%s: %.0f million spheres per second in ranges%n", batch.getClass().getSimpleName(), perSecond / 1e6);
+            for (int round = 0; round < 2; round++) {
+                start = System.nanoTime();
+                for (int i = 0; i < 20_000_000; i++) {
+                    int group = i & 1023;
+                    System.arraycopy(cells, group * 4, neighbors, 0, 4);
+                    batch.classify(i % 100, 0, 0, spheres[0], spheres[1], spheres[2], spheres[3], neighbors, counts[group], out);
+                }
+            }
+            System.out.printf("%s: %.1f ns per group of neighbors%n", batch.getClass().getSimpleName(), (System.nanoTime() - start) / 20e6);
+        }
+        // And the whole thing, which mostly checks neighbors
+        double[] points = new double[20_000 * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 1000;
+        }
+        long start = 0;
+        for (int round = 0; round < 3; round++) {
+            start = System.nanoTime();
+            Delaunay3D.triangulate(points, false);
+        }
+        System.out.printf("Triangulating 20000 points: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+}
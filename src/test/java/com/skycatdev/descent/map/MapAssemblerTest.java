@@ -0,0 +1,90 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.biome.BiomeKeys;
+import org.jetbrains.annotations.UnknownNullability;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import xyz.nucleoid.map_templates.BlockBounds;
+import xyz.nucleoid.map_templates.MapEntity;
+import xyz.nucleoid.map_templates.MapTemplate;
+import xyz.nucleoid.map_templates.MapTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MapAssemblerTest {
+    protected static @UnknownNullability DungeonPiece HALL_1_1_1;
+
+    @BeforeAll
+    static void setup() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        MapTemplate hall_1_1_1 = MapTemplate.createEmpty();
+        hall_1_1_1.setBlockState(BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState());
+        hall_1_1_1.getMetadata().addRegion(DungeonPiece.OPENING_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        hall_1_1_1.getMetadata().addRegion(DungeonPiece.DUNGEON_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        HALL_1_1_1 = new DungeonPiece(hall_1_1_1, Identifier.of(Descent.MOD_ID, "test/hall_1_1_1"));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void placesPieces() {
+        MapTemplate map = new MapAssembler()
+                .add(HALL_1_1_1)
+                .add(HALL_1_1_1.withTransform(MapTransform.translation(2, 1, 0)))
+                .build();
+
+        assertThat(map.getBlockState(BlockPos.ORIGIN)).isEqualTo(Blocks.SPONGE.getDefaultState());
+        assertThat(map.getBlockState(new BlockPos(2, 1, 0))).isEqualTo(Blocks.SPONGE.getDefaultState());
+        assertThat(map.getBlockState(new BlockPos(1, 0, 0)).isAir()).isTrue();
+        assertThat(map.getBounds()).isEqualTo(BlockBounds.of(0, 0, 0, 2, 1, 0));
+        assertThat(map.getMetadata().getRegionBounds(DungeonPiece.DUNGEON_MARKER))
+                .containsExactlyInAnyOrder(BlockBounds.ofBlock(BlockPos.ORIGIN), BlockBounds.ofBlock(new BlockPos(2, 1, 0)));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void movesAboveZero() {
+        MapTemplate map = new MapAssembler()
+                .add(HALL_1_1_1.withTransform(MapTransform.translation(0, -3, 0)))
+                .add(HALL_1_1_1.withTransform(MapTransform.translation(1, 0, 0)))
+                .build();
+
+        assertThat(map.getBlockState(BlockPos.ORIGIN)).isEqualTo(Blocks.SPONGE.getDefaultState());
+        assertThat(map.getBlockState(new BlockPos(1, 3, 0))).isEqualTo(Blocks.SPONGE.getDefaultState());
+        assertThat(map.getBounds().min().getY()).isEqualTo(0);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void copiesEntitiesAndData() {
+        MapTemplate template = MapTemplate.createEmpty();
+        template.setBlockState(BlockPos.ORIGIN, Blocks.SPONGE.getDefaultState());
+        template.getMetadata().addRegion(DungeonPiece.OPENING_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        template.getMetadata().addRegion(DungeonPiece.DUNGEON_MARKER, BlockBounds.ofBlock(BlockPos.ORIGIN));
+        NbtCompound entity = new NbtCompound();
+        entity.putString("id", "minecraft:pig");
+        template.addEntity(new MapEntity(new Vec3d(0.5, 0, 0.5), entity));
+        template.getMetadata().getData().putString("test", "kept");
+        template.setBiome(BiomeKeys.PLAINS);
+        DungeonPiece piece = new DungeonPiece(template, Identifier.of(Descent.MOD_ID, "test/with_entity"));
+
+        MapTemplate map = new MapAssembler()
+                .add(piece.withTransform(MapTransform.translation(3, 0, 0)))
+                .add(HALL_1_1_1)
+                .build();
+
+        assertThat(map.getEntities().map(MapEntity::position)).containsExactly(new Vec3d(3.5, 0, 0.5));
+        assertThat(map.getMetadata().getData().getString("test", "")).isEqualTo("kept");
+        assertThat(map.getBiome()).isEqualTo(BiomeKeys.PLAINS);
+    }
+}
@@ -0,0 +1,32 @@
+package com.skycatdev.descent.map;
+
+import com.skycatdev.descent.Descent;
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import xyz.nucleoid.map_templates.MapTransform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlacementKeyTest {
+    private static final Identifier ID = Identifier.of(Descent.MOD_ID, "test/hall_1_1_1");
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void translatedIsInterned() {
+        PlacementKey key = PlacementKey.of(ID, MapTransform.translation(1, 2, 3));
+        assertThat(key.translated(4, -5, 6)).isSameAs(PlacementKey.of(ID, MapTransform.translation(5, -3, 9)));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void farPlacementsDontCollide() {
+        // Packed into a long, y wraps past 2048, and x and z past about 33 million
+        PlacementKey key = PlacementKey.of(ID, MapTransform.translation(0, 0, 0));
+        assertThat(key.translated(0, 4096, 0)).isNotEqualTo(key);
+        assertThat(key.translated(1 << 26, 0, 0)).isNotEqualTo(key);
+        assertThat(key.translated(0, 0, 1 << 26)).isNotEqualTo(key);
+        assertThat(key.translated(0, 4096, 0).translated(0, -4096, 0)).isSameAs(key);
+    }
+}
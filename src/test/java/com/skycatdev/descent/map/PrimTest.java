@@ -3,6 +3,9 @@ package com.skycatdev.descent.map;
 import net.minecraft.util.math.Vec3d;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -41,4 +44,45 @@ public class PrimTest {
         assertThat(Prim.minimumSpanningTree(expected, c))
                 .containsExactlyInAnyOrderElementsOf(expected);
     }
+
+    /**
+     * The original Prim, which checks every edge each step
+     */
+    private static List<RoomEdge> scanningPrim(List<RoomEdge> edges, int vertexCount, int start) {
+        boolean[] closed = new boolean[vertexCount];
+        closed[start] = true;
+        List<RoomEdge> results = new ArrayList<>();
+        while (true) {
+            RoomEdge chosen = null;
+            for (RoomEdge edge : edges) {
+                if ((closed[edge.u()] ^ closed[edge.v()]) && (chosen == null || edge.length() < chosen.length())) {
+                    chosen = edge;
+                }
+            }
+            if (chosen == null) break;
+            results.add(chosen);
+            closed[chosen.u()] = true;
+            closed[chosen.v()] = true;
+        }
+        return results;
+    }
+
+    @Test
+    void testSameTreeAsScanning() {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 300; trial++) {
+            int vertexCount = 1 + random.nextInt(60);
+            List<RoomEdge> edges = new ArrayList<>();
+            int edgeCount = random.nextInt(vertexCount * 20 + 1);
+            for (int i = 0; i < edgeCount; i++) {
+                // Lots of ties, and some repeated edges
+                edges.add(new RoomEdge(random.nextInt(vertexCount), random.nextInt(vertexCount), random.nextInt(5)));
+            }
+            int start = random.nextInt(vertexCount);
+            List<RoomEdge> expected = scanningPrim(edges, vertexCount, start);
+            assertThat(Prim.minimumSpanningTree(edges, vertexCount, start)).containsExactlyElementsOf(expected);
+            assertThat(Kruskal.minimumSpanningTree(edges, vertexCount, start)).containsExactlyElementsOf(expected);
+            assertThat(SpanningTree.minimum(edges, vertexCount, start)).containsExactlyElementsOf(expected);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProximityGraphsTest {
+    private static double[] randomCenters(Random random, int count) {
+        double[] points = new double[count * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(60) + (random.nextBoolean() ? 0.5 : 0);
+        }
+        return SnappedPoints.of(points).vertices();
+    }
+
+    private static double squaredDistance(double[] points, int a, int b) {
+        double dx = points[a * 3] - points[b * 3], dy = points[a * 3 + 1] - points[b * 3 + 1], dz = points[a * 3 + 2] - points[b * 3 + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static boolean isConnected(List<RoomEdge> edges, int count) {
+        UnionFind pieces = new UnionFind(count);
+        int pieceCount = count;
+        for (RoomEdge edge : edges) {
+            if (pieces.union(edge.u(), edge.v())) {
+                pieceCount--;
+            }
+        }
+        return pieceCount == 1;
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void nearestMatchesBruteForce() {
+        double[] points = randomCenters(new Random(23), 300);
+        int count = points.length / 3;
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++) {
+            all[i] = i;
+        }
+        PointGrid grid = new PointGrid(points, all, PointGrid.cellSizeFor(points, count, 2));
+        int[] found = new int[5];
+        for (int u = 0; u < count; u++) {
+            int self = u;
+            assertThat(grid.nearest(points[u * 3], points[u * 3 + 1], points[u * 3 + 2], 5, w -> w != self, found)).isEqualTo(5);
+            int[] expected = IntStream.range(0, count).filter(w -> w != self).boxed()
+                    .sorted((a, b) -> {
+                        int compared = Double.compare(squaredDistance(points, self, a), squaredDistance(points, self, b));
+                        return compared != 0 ? compared : Integer.compare(a, b);
+                    })
+                    .limit(5)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            assertThat(found).containsExactly(expected);
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void gabrielMatchesBruteForce() {
+        double[] points = randomCenters(new Random(230), 120);
+        int count = points.length / 3;
+        Set<RoomEdge> expected = new HashSet<>();
+        for (int u = 0; u < count; u++) {
+            for (int v = u + 1; v < count; v++) {
+                double x = (points[u * 3] + points[v * 3]) / 2, y = (points[u * 3 + 1] + points[v * 3 + 1]) / 2, z = (points[u * 3 + 2] + points[v * 3 + 2]) / 2;
+                double radiusSquared = squaredDistance(points, u, v) / 4;
+                boolean blocked = false;
+                for (int w = 0; w < count && !blocked; w++) {
+                    double dx = points[w * 3] - x, dy = points[w * 3 + 1] - y, dz = points[w * 3 + 2] - z;
+                    blocked = w != u && w != v && dx * dx + dy * dy + dz * dz < radiusSquared;
+                }
+                if (!blocked) {
+                    expected.add(RoomEdge.between(points, u, v));
+                }
+            }
+        }
+        // With every room as a candidate, nothing is missed
+        List<RoomEdge> gabriel = ProximityGraphs.gabriel(points, count - 1);
+        assertThat(gabriel).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(ProximityGraphs.relativeNeighborhood(points, count - 1)).isSubsetOf(gabriel);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void sparseGraphsAreConnected() {
+        double[] points = randomCenters(new Random(2300), 500);
+        int count = points.length / 3;
+        for (int neighbors : new int[]{1, 2, 8}) {
+            assertThat(isConnected(ProximityGraphs.nearestNeighbors(points, neighbors), count)).isTrue();
+            assertThat(isConnected(ProximityGraphs.gabriel(points, neighbors), count)).isTrue();
+            assertThat(isConnected(ProximityGraphs.relativeNeighborhood(points, neighbors), count)).isTrue();
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void sameSpanningTreeAsDelaunay() {
+        Random random = new Random(23000);
+        double[] points = new double[2000 * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 500;
+        }
+        Set<RoomEdge> expected = new HashSet<>(SpanningTree.minimum(Delaunay3D.triangulate(points), 2000, 0));
+        for (RoomGraph graph : RoomGraph.values()) {
+            assertThat(SpanningTree.minimum(graph.build(points, 8), 2000, 0)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void clusteredSameSpanningTreeAsDelaunay() {
+        // Tight clumps far apart, so every clump is its own piece and has to search a long way out
+        Random random = new Random(230000);
+        double[] points = new double[2000 * 3];
+        for (int cluster = 0; cluster < 40; cluster++) {
+            double x = random.nextDouble() * 10000, y = random.nextDouble() * 10000, z = random.nextDouble() * 10000;
+            for (int i = cluster * 50 * 3; i < (cluster + 1) * 50 * 3; i += 3) {
+                points[i] = x + random.nextDouble() * 5;
+                points[i + 1] = y + random.nextDouble() * 5;
+                points[i + 2] = z + random.nextDouble() * 5;
+            }
+        }
+        Set<RoomEdge> expected = new HashSet<>(SpanningTree.minimum(Delaunay3D.triangulate(points), 2000, 0));
+        for (RoomGraph graph : RoomGraph.values()) {
+            assertThat(SpanningTree.minimum(graph.build(points, 8), 2000, 0)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+}
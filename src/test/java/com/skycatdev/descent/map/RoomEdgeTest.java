@@ -0,0 +1,36 @@
+package com.skycatdev.descent.map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoomEdgeTest {
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void keyIsSymmetric() {
+        assertThat(RoomEdge.key(3, 70000)).isEqualTo(RoomEdge.key(70000, 3));
+        assertThat(new RoomEdge(9, 2, 1).key()).isEqualTo(RoomEdge.key(2, 9));
+        long key = RoomEdge.key(Integer.MAX_VALUE, 12);
+        assertThat(RoomEdge.uOf(key)).isEqualTo(12);
+        assertThat(RoomEdge.vOf(key)).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void keysSortByUThenV() {
+        long[] keys = {RoomEdge.key(1, 5), RoomEdge.key(0, 7), RoomEdge.key(1, 2), RoomEdge.key(0, 1 << 20)};
+        Arrays.sort(keys);
+        assertThat(keys).containsExactly(RoomEdge.key(0, 7), RoomEdge.key(0, 1 << 20), RoomEdge.key(1, 2), RoomEdge.key(1, 5));
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void betweenKey() {
+        double[] points = {0, 0, 0, 3, 4, 0};
+        assertThat(RoomEdge.between(points, RoomEdge.key(1, 0))).isEqualTo(new RoomEdge(0, 1, 5));
+    }
+}
@@ -0,0 +1,172 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.random.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoomSeparatorTest {
+    /**
+     * @return min x, y, z, then max x, y, z of each room, all piled up near the origin
+     */
+    private static int[] piledRooms(int count, long seed) {
+        Random random = Random.create(seed);
+        int[] bounds = new int[count * 6];
+        for (int i = 0; i < count; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                int min = random.nextBetween(-10, 10);
+                bounds[i * 6 + axis] = min;
+                bounds[i * 6 + 3 + axis] = min + random.nextBetween(0, 12);
+            }
+        }
+        return bounds;
+    }
+
+    private static boolean tooClose(int[] bounds, int a, int b, int separationX, int separationY, int separationZ) {
+        int[] separation = {separationX, separationY, separationZ};
+        for (int axis = 0; axis < 3; axis++) {
+            if (bounds[a * 6 + axis] > bounds[b * 6 + 3 + axis] + separation[axis] || bounds[b * 6 + axis] > bounds[a * 6 + 3 + axis] + separation[axis]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testSameMovesAsCheckingEveryPair() throws NoSolutionException {
+        for (int seed = 0; seed < 20; seed++) {
+            int count = 2 + seed * 5;
+            int[] bounds = piledRooms(count, seed);
+            RoomSeparator separator = new RoomSeparator(bounds, 2, 1, 3);
+            separator.separate(Random.create(seed));
+
+            // Steer the way it used to be done, checking every pair
+            int[] expected = bounds.clone();
+            Random random = Random.create(seed);
+            boolean keepSteering = true;
+            while (keepSteering) {
+                keepSteering = false;
+                for (int i = 0; i < count; i++) {
+                    boolean move = false;
+                    for (int j = 0; j < count; j++) {
+                        if (i != j && tooClose(expected, i, j, 2, 1, 3)) {
+                            move = true;
+                        }
+                    }
+                    if (move) {
+                        keepSteering = true;
+                        int x = random.nextBetween(-6, 6);
+                        int y = random.nextBetween(-3, 3);
+                        int z = random.nextBetween(-9, 9);
+                        for (int end = 0; end < 6; end += 3) {
+                            expected[i * 6 + end] += x;
+                            expected[i * 6 + end + 1] += y;
+                            expected[i * 6 + end + 2] += z;
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                assertThat(new int[]{separator.offsetX(i), separator.offsetY(i), separator.offsetZ(i)})
+                        .containsExactly(expected[i * 6] - bounds[i * 6], expected[i * 6 + 1] - bounds[i * 6 + 1], expected[i * 6 + 2] - bounds[i * 6 + 2]);
+                assertThat(separator.overlapsAny(i)).isFalse();
+                for (int j = 0; j < i; j++) {
+                    assertThat(tooClose(expected, i, j, 2, 1, 3)).isFalse();
+                }
+            }
+            assertThat(separator.passes()).isPositive();
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testAlreadySeparated() throws NoSolutionException {
+        RoomSeparator separator = new RoomSeparator(new int[]{0, 0, 0, 4, 4, 4, 7, 0, 0, 10, 4, 4}, 2, 2, 2);
+        separator.separate(Random.create(0));
+        assertThat(separator.passes()).isEqualTo(1);
+        assertThat(separator.moves()).isZero();
+        assertThat(separator.moved(0)).isFalse();
+        assertThat(separator.moved(1)).isFalse();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testTouchingIsTooClose() {
+        RoomSeparator separator = new RoomSeparator(new int[]{0, 0, 0, 4, 4, 4, 7, 0, 0, 10, 4, 4}, 3, 0, 0);
+        assertThat(separator.overlapsAny(0)).isTrue();
+        assertThat(separator.overlapsAny(1)).isTrue();
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testFailsWithoutSeparation() {
+        RoomSeparator separator = new RoomSeparator(new int[]{0, 0, 0, 4, 4, 4, 2, 2, 2, 6, 6, 6}, 0, 0, 0);
+        assertThatThrownBy(() -> separator.separate(Random.create(0))).isInstanceOf(NoSolutionException.class);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testGivesUp() {
+        // Jittering a few blocks at a time will never get these far enough apart
+        RoomSeparator separator = new RoomSeparator(new int[]{0, 0, 0, 1_000_000, 0, 0, 0, 0, 0, 1_000_000, 0, 0, 0, 0, 0, 1_000_000, 0, 0}, 1, 0, 0);
+        assertThatThrownBy(() -> separator.separate(Random.create(0))).isInstanceOf(NoSolutionException.class);
+        assertThat(separator.passes()).isEqualTo(RoomSeparator.MAX_PASSES);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testPushSeparates() throws NoSolutionException {
+        for (int seed = 0; seed < 10; seed++) {
+            int count = 2 + seed * 60; // Big enough to be pushed in chunks
+            int[] bounds = piledRooms(count, seed);
+            RoomSeparator separator = new RoomSeparator(bounds, 2, 0, 3);
+            separator.push();
+            RoomSeparator again = new RoomSeparator(bounds, 2, 0, 3);
+            again.push();
+
+            int[] moved = bounds.clone();
+            for (int i = 0; i < count; i++) {
+                assertThat(separator.offsetY(i)).isZero();
+                assertThat(new int[]{separator.offsetX(i), separator.offsetZ(i)})
+                        .containsExactly(again.offsetX(i), again.offsetZ(i));
+                for (int end = 0; end < 6; end += 3) {
+                    moved[i * 6 + end] += separator.offsetX(i);
+                    moved[i * 6 + end + 2] += separator.offsetZ(i);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                assertThat(separator.overlapsAny(i)).isFalse();
+                for (int j = 0; j < i; j++) {
+                    assertThat(tooClose(moved, i, j, 2, 0, 3)).isFalse();
+                }
+            }
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testPushTakesFewerPasses() throws NoSolutionException {
+        for (int count : new int[]{9, 30, 100, 250, 500}) {
+            for (int seed = 0; seed < 3; seed++) {
+                int[] bounds = piledRooms(count, seed);
+                RoomSeparator jittered = new RoomSeparator(bounds, 2, 1, 3);
+                jittered.separate(Random.create(seed));
+                RoomSeparator pushed = new RoomSeparator(bounds, 2, 1, 3);
+                pushed.push();
+                assertThat(pushed.passes()).isLessThan(jittered.passes());
+            }
+        }
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void testPushFailsWithoutSeparation() {
+        RoomSeparator separator = new RoomSeparator(new int[]{0, 0, 0, 4, 4, 4, 2, 2, 2, 6, 6, 6}, 0, 0, 0);
+        assertThatThrownBy(separator::push).isInstanceOf(NoSolutionException.class);
+    }
+}
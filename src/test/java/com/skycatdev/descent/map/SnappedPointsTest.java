@@ -0,0 +1,67 @@
+package com.skycatdev.descent.map;
+
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnappedPointsTest {
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void mergesSameCenters() {
+        double[] points = {
+                0.5, 1, 0.5,
+                3, 1, 0.5,
+                0.5, 1, 0.5,
+                0.5, 1.5, 0.5,
+                0.5, 1, 0.5
+        };
+        SnappedPoints snapped = SnappedPoints.of(points);
+        assertThat(snapped.hasDuplicates()).isTrue();
+        assertThat(snapped.vertexCount()).isEqualTo(3);
+        assertThat(snapped.vertices()).containsExactly(0.5, 1, 0.5, 3, 1, 0.5, 0.5, 1.5, 0.5);
+        assertThat(snapped.vertexOf(2)).isEqualTo(0);
+        assertThat(snapped.vertexOf(3)).isEqualTo(2);
+        assertThat(snapped.pointCount(0)).isEqualTo(3);
+        assertThat(new int[]{snapped.point(0, 0), snapped.point(0, 1), snapped.point(0, 2)}).containsExactly(0, 2, 4);
+        assertThat(snapped.pointCount(1)).isEqualTo(1);
+        assertThat(snapped.point(1, 0)).isEqualTo(1);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void keepsDistinctPoints() {
+        double[] points = new double[300];
+        for (int i = 0; i < 100; i++) {
+            points[i * 3] = i * 0.5 - 20;
+            points[i * 3 + 1] = -i;
+            points[i * 3 + 2] = 7;
+        }
+        SnappedPoints snapped = SnappedPoints.of(points);
+        assertThat(snapped.hasDuplicates()).isFalse();
+        assertThat(snapped.vertices()).containsExactly(points);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void mergesOnHugeMaps() {
+        // Wider than a world, and half a block apart at the far end
+        double[] points = {-30_000_000, 64, 0, 30_000_000, -64, 0, 30_000_000.5, -64, 0, 30_000_000, -64, 0, -30_000_000, 64, 1e-3};
+        SnappedPoints snapped = SnappedPoints.of(points);
+        assertThat(snapped.vertexCount()).isEqualTo(3);
+        assertThat(new int[]{snapped.vertexOf(0), snapped.vertexOf(1), snapped.vertexOf(2), snapped.vertexOf(3), snapped.vertexOf(4)})
+                .containsExactly(0, 1, 2, 1, 0);
+    }
+
+    @Test
+    @Execution(ExecutionMode.CONCURRENT)
+    void triangulateWithDuplicates() {
+        Vec3d a = new Vec3d(0, 0, 0), b = new Vec3d(0, 0, 2), c = new Vec3d(0, 1, 0), d = new Vec3d(2, 0, 0);
+        assertThat(Delaunay3D.triangulate(List.of(a, b, c, d, b, a, new Vec3d(2, 0, 0))))
+                .containsExactlyInAnyOrderElementsOf(Delaunay3D.triangulate(List.of(a, b, c, d)));
+    }
+}
@@ -0,0 +1,39 @@
+package com.skycatdev.descent.map;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link InsphereBatch} with the Vector API, checking as many spheres at a time as the CPU can fit in a register. Only
+ * scans over a range of cells are vectorized. Only made through {@link InsphereBatch#get()}, which makes sure the module
+ * is there first.
+ */
+public class VectorInsphereBatch extends InsphereBatch {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void classify(double x, double y, double z, double[] centerX, double[] centerY, double[] centerZ, double[] radiiSquared, int from, int to, byte[] out) {
+        for (int i = from; i < to; i += SPECIES.length()) {
+            VectorMask<Double> inRange = SPECIES.indexInRange(i - from, to - from);
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, centerX, i, inRange).sub(x);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, centerY, i, inRange).sub(y);
+            DoubleVector dz = DoubleVector.fromArray(SPECIES, centerZ, i, inRange).sub(z);
+            DoubleVector radii = DoubleVector.fromArray(SPECIES, radiiSquared, i, inRange);
+            write(dx, dy, dz, radii, inRange, out, i - from);
+        }
+    }
+
+    private static void write(DoubleVector dx, DoubleVector dy, DoubleVector dz, DoubleVector radii, VectorMask<Double> inRange, byte[] out, int offset) {
+        DoubleVector distances = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz));
+        // NaN compares false both ways, so it ends up unsure, same as the scalar version
+        long inside = distances.compare(VectorOperators.LT, radii.mul(1 - TOLERANCE)).toLong();
+        long outside = distances.compare(VectorOperators.GT, radii.mul(1 + TOLERANCE)).toLong();
+        int lanes = inRange.trueCount();
+        for (int lane = 0; lane < lanes; lane++) {
+            long bit = 1L << lane;
+            out[offset + lane] = (inside & bit) != 0 ? INSIDE : (outside & bit) != 0 ? OUTSIDE : UNSURE;
+        }
+    }
+}